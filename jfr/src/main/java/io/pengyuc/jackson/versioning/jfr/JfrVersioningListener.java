@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning.jfr;
+
+import com.google.common.collect.ImmutableList;
+import io.pengyuc.jackson.versioning.JsonVersioningListener;
+import io.pengyuc.jackson.versioning.Version;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.List;
+
+/**
+ * Listener that commits a JDK Flight Recorder event for each stage of versioning, so that a recording shows where
+ * the time of a slow value went: buffering the fields ahead of the version, converting, binding or writing.
+ * <p>
+ * The events are disabled by default; enable them in the settings of a recording, ex:
+ * {@code recording.enable("io.pengyuc.jackson.versioning.Deserialize")}, or with all their names in a .jfc file.
+ * While none of them is enabled, the versioning serializers and deserializers only read a flag of whether any of them
+ * is. The flag is refreshed whenever a recording starts or stops, and every second while recording, so events enabled
+ * in a recording that is already running are seen within a second.
+ * <p>
+ * The events are committed at the end of their stage, so their duration is the time of the stage rather than that of
+ * the event itself.
+ * <pre>
+ * ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule(new JfrVersioningListener()));
+ * </pre>
+ */
+public final class JfrVersioningListener extends JsonVersioningListener {
+    private static final String CATEGORY = "Jackson Versioning";
+
+    private static final List<Class<? extends Event>> EVENT_CLASSES = ImmutableList.of(
+            BufferEvent.class, DeserializeEvent.class, ConvertEvent.class, SerializeEvent.class, RejectionEvent.class);
+
+    private static final EventType[] EVENT_TYPES = new EventType[EVENT_CLASSES.size()];
+
+    // Whether any of the events is enabled, so that a value costs a single volatile read while none is
+    private static volatile boolean enabled;
+
+    static {
+        for (int i = 0; i < EVENT_TYPES.length; i++) {
+            FlightRecorder.register(EVENT_CLASSES.get(i));
+            EVENT_TYPES[i] = EventType.getEventType(EVENT_CLASSES.get(i));
+        }
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                refresh();
+            }
+        });
+        // The settings of a running recording can change without a change of its state
+        FlightRecorder.addPeriodicEvent(SettingsCheckEvent.class, new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        });
+        refresh();
+    }
+
+    private static void refresh() {
+        boolean anyEnabled = false;
+        for (EventType eventType : EVENT_TYPES)
+            anyEnabled |= eventType.isEnabled();
+        enabled = anyEnabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onStage(Class<?> model, Version jsonVersion, Stage stage, long elapsedNanos, long payloadSize) {
+        StageEvent event;
+        switch (stage) {
+            case BUFFER:
+                event = new BufferEvent();
+                break;
+            case DESERIALIZE:
+                event = new DeserializeEvent();
+                break;
+            case CONVERT:
+                event = new ConvertEvent();
+                break;
+            case SERIALIZE:
+                event = new SerializeEvent();
+                break;
+            default:
+                return;
+        }
+        if (!event.isEnabled())
+            return;
+        event.model = model;
+        event.version = jsonVersion.toString();
+        event.elapsed = elapsedNanos;
+        event.payloadSize = payloadSize;
+        event.commit();
+    }
+
+    @Override
+    public void onRejected(Class<?> model, Version jsonVersion, Rejection rejection) {
+        RejectionEvent event = new RejectionEvent();
+        if (!event.isEnabled())
+            return;
+        event.model = model;
+        event.version = jsonVersion.toString();
+        event.rejection = rejection.name();
+        event.commit();
+    }
+
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    abstract static class StageEvent extends Event {
+        @Label("Model")
+        Class<?> model;
+
+        @Label("JSON Version")
+        String version;
+
+        @Label("Elapsed")
+        @Description("Time of the stage")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+
+        @Label("Payload Size")
+        @Description("Bytes, or chars if read from text, of the json object; -1 if the parser does not tell")
+        @DataAmount
+        long payloadSize;
+    }
+
+    @Name("io.pengyuc.jackson.versioning.Buffer")
+    @Label("Versioning Buffer")
+    @Description("Fields of a json object buffered until its version is known")
+    public static final class BufferEvent extends StageEvent {
+    }
+
+    @Name("io.pengyuc.jackson.versioning.Deserialize")
+    @Label("Versioning Deserialize")
+    @Description("Json object bound once its version is known, with its conversion and out-of-version checks")
+    public static final class DeserializeEvent extends StageEvent {
+    }
+
+    @Name("io.pengyuc.jackson.versioning.Convert")
+    @Label("Versioning Convert")
+    @Description("Tree of a json object converted to the model version")
+    public static final class ConvertEvent extends StageEvent {
+    }
+
+    @Name("io.pengyuc.jackson.versioning.Serialize")
+    @Label("Versioning Serialize")
+    @Description("Properties of a bean filtered and written in the json version")
+    public static final class SerializeEvent extends StageEvent {
+    }
+
+    @Name("io.pengyuc.jackson.versioning.SettingsCheck")
+    @Label("Versioning Settings Check")
+    @Description("Periodic check of whether the versioning events are enabled; never committed")
+    @Category(CATEGORY)
+    @Period("1 s")
+    @StackTrace(false)
+    static final class SettingsCheckEvent extends Event {
+    }
+
+    @Name("io.pengyuc.jackson.versioning.Rejection")
+    @Label("Versioning Rejection")
+    @Description("Value rejected in its json version")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    public static final class RejectionEvent extends Event {
+        @Label("Model")
+        Class<?> model;
+
+        @Label("JSON Version")
+        String version;
+
+        @Label("Rejection")
+        String rejection;
+    }
+}
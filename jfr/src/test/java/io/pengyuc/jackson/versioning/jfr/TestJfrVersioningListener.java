@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning.jfr;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.pengyuc.jackson.versioning.JsonVersioningListener;
+import io.pengyuc.jackson.versioning.JsonVersioningMetrics;
+import io.pengyuc.jackson.versioning.JsonVersioningModule;
+import io.pengyuc.jackson.versioning.annotations.JsonUntil;
+import io.pengyuc.jackson.versioning.annotations.JsonVersionProperty;
+import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TestJfrVersioningListener {
+    private static final String BUFFER = "io.pengyuc.jackson.versioning.Buffer";
+    private static final String DESERIALIZE = "io.pengyuc.jackson.versioning.Deserialize";
+    private static final String SERIALIZE = "io.pengyuc.jackson.versioning.Serialize";
+    private static final String REJECTION = "io.pengyuc.jackson.versioning.Rejection";
+    private static final String JSON = "{\"version\": \"0.9\", \"name\": \"rav4\"}";
+
+    @JsonVersioned("1.0")
+    public static class Car {
+        @JsonVersionProperty
+        public String version;
+        public String name;
+        @JsonUntil("0.8")
+        public String legacy;
+    }
+
+    private static ObjectMapper newMapper(JsonVersioningListener listener) {
+        return new ObjectMapper().registerModule(new JsonVersioningModule(listener));
+    }
+
+    /**
+     * @return the events of the stopped recording with the name
+     */
+    private static List<RecordedEvent> readEvents(Recording recording, String name) throws IOException {
+        Path file = Files.createTempFile("jackson-versioning", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals(name))
+                    events.add(event);
+            }
+            return events;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Waits for the listener to see the settings of the recordings, checked every second while recording
+     */
+    private static void awaitEnabled(JfrVersioningListener listener, boolean enabled) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (listener.isEnabled() != enabled && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        Assert.assertEquals(enabled, listener.isEnabled());
+    }
+
+    private static void assertEvent(RecordedEvent event, String version, long payloadSize) {
+        Assert.assertEquals(Car.class.getName(), event.getClass("model").getName());
+        Assert.assertEquals(version, event.getString("version"));
+        Assert.assertEquals(payloadSize, event.getLong("payloadSize"));
+    }
+
+    @Test
+    public void whenStagesAreRecorded_TheEventsCarryTheModelVersionAndPayloadSize() throws IOException {
+        ObjectMapper mapper = newMapper(new JfrVersioningListener());
+        String versionNotFirst = "{\"name\": \"rav4\", \"version\": \"0.9\"}";
+        Car car = new Car();
+        car.version = "0.7";
+        car.name = "rav4";
+
+        try (Recording recording = new Recording()) {
+            recording.enable(BUFFER);
+            recording.enable(DESERIALIZE);
+            recording.enable(SERIALIZE);
+            recording.start();
+            mapper.readValue(versionNotFirst, Car.class);
+            mapper.writeValueAsString(car);
+            recording.stop();
+
+            List<RecordedEvent> buffered = readEvents(recording, BUFFER);
+            Assert.assertEquals(1, buffered.size());
+            // Buffered up to the version, without the closing brace
+            assertEvent(buffered.get(0), "0.9", versionNotFirst.length() - 1);
+            List<RecordedEvent> deserialized = readEvents(recording, DESERIALIZE);
+            Assert.assertEquals(1, deserialized.size());
+            assertEvent(deserialized.get(0), "0.9", versionNotFirst.length());
+            List<RecordedEvent> serialized = readEvents(recording, SERIALIZE);
+            Assert.assertEquals(1, serialized.size());
+            assertEvent(serialized.get(0), "0.7", -1);
+            Assert.assertTrue(serialized.get(0).getLong("elapsed") >= 0);
+        }
+    }
+
+    @Test
+    public void whenValuesAreRejected_TheEventsCarryTheModelVersionAndRejection() throws IOException {
+        ObjectMapper mapper = newMapper(new JfrVersioningListener());
+
+        try (Recording recording = new Recording()) {
+            recording.enable(REJECTION);
+            recording.start();
+            for (String json : new String[] {"{\"version\": \"2.0\"}", "{\"version\": \"0.9\", \"legacy\": \"a\"}"}) {
+                try {
+                    mapper.readValue(json, Car.class);
+                    Assert.fail("Expected a rejection of " + json);
+                } catch (JsonMappingException e) {
+                    // expected
+                }
+            }
+            recording.stop();
+
+            List<RecordedEvent> events = readEvents(recording, REJECTION);
+            Assert.assertEquals(2, events.size());
+            Assert.assertEquals(Car.class.getName(), events.get(0).getClass("model").getName());
+            Assert.assertEquals("2.0", events.get(0).getString("version"));
+            Assert.assertEquals("VERSION_AFTER_MODEL", events.get(0).getString("rejection"));
+            Assert.assertEquals("0.9", events.get(1).getString("version"));
+            Assert.assertEquals("PROPERTY_NOT_IN_VERSION", events.get(1).getString("rejection"));
+        }
+    }
+
+    @Test
+    public void whenEventsAreEnabledDuringARecording_TheListenerIsEnabledWithinASecond()
+            throws IOException, InterruptedException {
+        JfrVersioningListener listener = new JfrVersioningListener();
+        ObjectMapper mapper = newMapper(listener);
+
+        try (Recording recording = new Recording()) {
+            recording.start();
+            Assert.assertFalse(listener.isEnabled());
+
+            recording.enable(DESERIALIZE);
+            awaitEnabled(listener, true);
+            mapper.readValue(JSON, Car.class);
+            recording.stop();
+
+            List<RecordedEvent> events = readEvents(recording, DESERIALIZE);
+            Assert.assertEquals(1, events.size());
+            assertEvent(events.get(0), "0.9", JSON.length());
+        }
+        // Refreshed when the recording stops
+        Assert.assertFalse(listener.isEnabled());
+    }
+
+    @Test
+    public void whenCombinedWithMetrics_BothAreToldOfTheStages() throws IOException {
+        JsonVersioningMetrics metrics = new JsonVersioningMetrics();
+        ObjectMapper mapper = newMapper(JsonVersioningListener.of(metrics, new JfrVersioningListener()));
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(DESERIALIZE);
+            recording.start();
+            mapper.readValue(JSON, Car.class);
+            recording.stop();
+            events = readEvents(recording, DESERIALIZE);
+        }
+
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(Car.class.getName(), events.get(0).getClass("model").getName());
+        Assert.assertEquals(1, metrics.getSnapshot(Car.class, "0.9")
+                .stage(JsonVersioningListener.Stage.DESERIALIZE).getCount());
+    }
+}
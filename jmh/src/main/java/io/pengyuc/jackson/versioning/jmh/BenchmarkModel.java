@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.pengyuc.jackson.versioning.jmh;
+
+import io.pengyuc.jackson.versioning.models.ModelPojoWithVersionProperty;
+import io.pengyuc.jackson.versioning.models.VersionedCar;
+import io.pengyuc.jackson.versioning.models.VersionedCarWrapper;
+
+/**
+ * The models the benchmarks run with
+ */
+public enum BenchmarkModel {
+    CAR(VersionedCar.class) {
+        @Override
+        Object create(String version) {
+            return new VersionedCar(5, "rav4", "toy", true);
+        }
+    },
+    CAR_WRAPPER(VersionedCarWrapper.class) {
+        @Override
+        Object create(String version) {
+            return new VersionedCarWrapper(new VersionedCar(5, "rav4", "toy", true));
+        }
+    },
+    POJO(ModelPojoWithVersionProperty.class) {
+        @Override
+        Object create(String version) {
+            ModelPojoWithVersionProperty pojo = new ModelPojoWithVersionProperty();
+            pojo.setVersion(version);
+            pojo.setDeprecatedAt08("something08");
+            pojo.setDeprecatedAt09("something09");
+            pojo.setAlwaysThereAttribute("alwaysThere");
+            return pojo;
+        }
+    },
+    WIDE(WideModel.class) {
+        @Override
+        Object create(String version) {
+            WideModel model = WideModel.create();
+            model.version = version;
+            return model;
+        }
+    },
+    DEEP(DeepModel.class) {
+        @Override
+        Object create(String version) {
+            DeepModel model = DeepModel.create(10);
+            for (DeepModel level = model; level != null; level = level.getChild())
+                level.setVersion(version);
+            return model;
+        }
+    };
+
+    /**
+     * The version the benchmarks read and write when it is not the model version
+     */
+    static final String JSON_VERSION = "0.9";
+
+    private final Class<?> type;
+
+    BenchmarkModel(Class<?> type) {
+        this.type = type;
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @param version the value of the version property, or null for none; ignored by models without one
+     */
+    abstract Object create(String version);
+}
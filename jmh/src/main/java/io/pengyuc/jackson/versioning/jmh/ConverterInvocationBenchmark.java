@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.pengyuc.jackson.versioning.jmh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.pengyuc.jackson.versioning.JsonVersioningModule;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithConverters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invoking a version converter reflectively and through a bound MethodHandle, as the module does, and deserializing
+ * json that runs through the converters of {@link ModelPojoWithConverters}. The handle is held in a field, as in the
+ * module, so it is not a JIT constant: the difference measured is the overhead of reflection, not inlining.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterInvocationBenchmark {
+    private static final byte[] CONVERTED_PAYLOAD = "{\"version\": \"0.3\", \"title\": \"rav4\"}".getBytes();
+
+    private ObjectNode node;
+    private Method method;
+    private MethodHandle handle;
+    private ObjectReader reader;
+
+    static void renameTitle(ObjectNode node) {
+        JsonNode title = node.remove("title");
+        if (title != null)
+            node.set("name", title);
+        else
+            node.set("title", node.remove("name"));
+    }
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        node = JsonNodeFactory.instance.objectNode().put("title", "rav4");
+        method = ConverterInvocationBenchmark.class.getDeclaredMethod("renameTitle", ObjectNode.class);
+        method.setAccessible(true);
+        handle = MethodHandles.lookup().unreflect(method)
+                .asType(MethodType.methodType(Object.class, ObjectNode.class));
+        reader = new ObjectMapper().registerModule(new JsonVersioningModule()).readerFor(ModelPojoWithConverters.class);
+    }
+
+    @Benchmark
+    public Object reflective() throws ReflectiveOperationException {
+        return method.invoke(null, node);
+    }
+
+    @Benchmark
+    public Object methodHandle() throws Throwable {
+        return (Object) handle.invokeExact(node);
+    }
+
+    @Benchmark
+    public Object deserializeWithConverters() throws IOException {
+        return reader.readValue(CONVERTED_PAYLOAD);
+    }
+}
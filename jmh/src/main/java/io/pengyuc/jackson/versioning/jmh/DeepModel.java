@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.pengyuc.jackson.versioning.jmh;
+
+import io.pengyuc.jackson.versioning.annotations.JsonSince;
+import io.pengyuc.jackson.versioning.annotations.JsonUntil;
+import io.pengyuc.jackson.versioning.annotations.JsonVersionProperty;
+import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
+
+/**
+ * A versioned model nesting itself, for documents with versioned beans at every level
+ */
+@JsonVersioned("1.0")
+public class DeepModel {
+    @JsonVersionProperty
+    private String version;
+
+    private String name;
+
+    @JsonUntil("0.9")
+    private String legacyName;
+
+    @JsonSince("0.8")
+    private Integer level;
+
+    private DeepModel child;
+
+    /**
+     * @return a chain of {@code depth} nested models
+     */
+    public static DeepModel create(int depth) {
+        DeepModel root = null;
+        for (int level = depth; level > 0; level--) {
+            DeepModel model = new DeepModel();
+            model.name = "level" + level;
+            model.legacyName = "legacy" + level;
+            model.level = level;
+            model.child = root;
+            root = model;
+        }
+        return root;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getLegacyName() {
+        return legacyName;
+    }
+
+    public void setLegacyName(String legacyName) {
+        this.legacyName = legacyName;
+    }
+
+    public Integer getLevel() {
+        return level;
+    }
+
+    public void setLevel(Integer level) {
+        this.level = level;
+    }
+
+    public DeepModel getChild() {
+        return child;
+    }
+
+    public void setChild(DeepModel child) {
+        this.child = child;
+    }
+}
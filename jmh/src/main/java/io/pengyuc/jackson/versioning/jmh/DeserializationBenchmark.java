@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.pengyuc.jackson.versioning.jmh;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.pengyuc.jackson.versioning.JsonVersioningModule;
+import io.pengyuc.jackson.versioning.Version;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserializing with a plain mapper and with the versioning module registered. The payload is written by the
+ * versioning module, without the version properties unless the version is taken from the body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeserializationBenchmark {
+    private static final String VERSION_PROPERTY = "version";
+
+    @Param({"CAR", "CAR_WRAPPER", "POJO", "WIDE", "DEEP"})
+    public BenchmarkModel model;
+
+    @Param({"BODY", "CONTEXT", "DEFAULT"})
+    public VersionSource versionSource;
+
+    private byte[] payload;
+    private ObjectReader plainReader;
+    private ObjectReader versioningReader;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper versioningMapper = new ObjectMapper().registerModule(new JsonVersioningModule());
+        ObjectWriter writer = versioningMapper.writer();
+        if (versionSource != VersionSource.DEFAULT)
+            writer = writer.withAttribute(Version.JsonVersionConfigSerializing, BenchmarkModel.JSON_VERSION);
+        JsonNode tree = versioningMapper.readTree(writer.writeValueAsBytes(model.create(null)));
+        if (versionSource != VersionSource.BODY)
+            removeVersionProperties(tree);
+        payload = versioningMapper.writeValueAsBytes(tree);
+
+        plainReader = new ObjectMapper().readerFor(model.getType());
+        ObjectReader reader = versioningMapper.readerFor(model.getType());
+        if (versionSource == VersionSource.CONTEXT)
+            reader = reader.withAttribute(Version.JsonVersionConfigDeserializing,
+                    Version.fromString(BenchmarkModel.JSON_VERSION));
+        versioningReader = reader;
+    }
+
+    private static void removeVersionProperties(JsonNode node) {
+        if (node.isObject())
+            ((ObjectNode) node).remove(VERSION_PROPERTY);
+        for (JsonNode child : node)
+            removeVersionProperties(child);
+    }
+
+    @Benchmark
+    public Object plain() throws IOException {
+        return plainReader.readValue(payload);
+    }
+
+    @Benchmark
+    public Object versioning() throws IOException {
+        return versioningReader.readValue(payload);
+    }
+}
@@ -0,0 +1,651 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning.jmh;
+
+import io.pengyuc.jackson.versioning.annotations.JsonSince;
+import io.pengyuc.jackson.versioning.annotations.JsonUntil;
+import io.pengyuc.jackson.versioning.annotations.JsonVersionProperty;
+import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
+
+/**
+ * A wide model with 200 fields. The fields repeat a pattern of four: unversioned, {@link JsonSince},
+ * {@link JsonUntil}, and both. The versions cycle from 0.1 to 0.9. Generated by
+ * {@link WideModelGenerator}; change the pattern there and rerun it rather than editing
+ * the fields one by one.
+ */
+@JsonVersioned("1.0")
+public class WideModel {
+    @JsonVersionProperty
+    public String version;
+
+    public String f000;
+    @JsonSince("0.1")
+    public int f001;
+    @JsonUntil("0.1")
+    public String f002;
+    @JsonSince("0.1")
+    @JsonUntil("0.2")
+    public int f003;
+    public String f004;
+    @JsonSince("0.2")
+    public int f005;
+    @JsonUntil("0.2")
+    public String f006;
+    @JsonSince("0.2")
+    @JsonUntil("0.3")
+    public int f007;
+    public String f008;
+    @JsonSince("0.3")
+    public int f009;
+    @JsonUntil("0.3")
+    public String f010;
+    @JsonSince("0.3")
+    @JsonUntil("0.4")
+    public int f011;
+    public String f012;
+    @JsonSince("0.4")
+    public int f013;
+    @JsonUntil("0.4")
+    public String f014;
+    @JsonSince("0.4")
+    @JsonUntil("0.5")
+    public int f015;
+    public String f016;
+    @JsonSince("0.5")
+    public int f017;
+    @JsonUntil("0.5")
+    public String f018;
+    @JsonSince("0.5")
+    @JsonUntil("0.6")
+    public int f019;
+    public String f020;
+    @JsonSince("0.6")
+    public int f021;
+    @JsonUntil("0.6")
+    public String f022;
+    @JsonSince("0.6")
+    @JsonUntil("0.7")
+    public int f023;
+    public String f024;
+    @JsonSince("0.7")
+    public int f025;
+    @JsonUntil("0.7")
+    public String f026;
+    @JsonSince("0.7")
+    @JsonUntil("0.8")
+    public int f027;
+    public String f028;
+    @JsonSince("0.8")
+    public int f029;
+    @JsonUntil("0.8")
+    public String f030;
+    @JsonSince("0.8")
+    @JsonUntil("0.9")
+    public int f031;
+    public String f032;
+    @JsonSince("0.9")
+    public int f033;
+    @JsonUntil("0.9")
+    public String f034;
+    @JsonSince("0.9")
+    @JsonUntil("1.0")
+    public int f035;
+    public String f036;
+    @JsonSince("0.1")
+    public int f037;
+    @JsonUntil("0.1")
+    public String f038;
+    @JsonSince("0.1")
+    @JsonUntil("0.2")
+    public int f039;
+    public String f040;
+    @JsonSince("0.2")
+    public int f041;
+    @JsonUntil("0.2")
+    public String f042;
+    @JsonSince("0.2")
+    @JsonUntil("0.3")
+    public int f043;
+    public String f044;
+    @JsonSince("0.3")
+    public int f045;
+    @JsonUntil("0.3")
+    public String f046;
+    @JsonSince("0.3")
+    @JsonUntil("0.4")
+    public int f047;
+    public String f048;
+    @JsonSince("0.4")
+    public int f049;
+    @JsonUntil("0.4")
+    public String f050;
+    @JsonSince("0.4")
+    @JsonUntil("0.5")
+    public int f051;
+    public String f052;
+    @JsonSince("0.5")
+    public int f053;
+    @JsonUntil("0.5")
+    public String f054;
+    @JsonSince("0.5")
+    @JsonUntil("0.6")
+    public int f055;
+    public String f056;
+    @JsonSince("0.6")
+    public int f057;
+    @JsonUntil("0.6")
+    public String f058;
+    @JsonSince("0.6")
+    @JsonUntil("0.7")
+    public int f059;
+    public String f060;
+    @JsonSince("0.7")
+    public int f061;
+    @JsonUntil("0.7")
+    public String f062;
+    @JsonSince("0.7")
+    @JsonUntil("0.8")
+    public int f063;
+    public String f064;
+    @JsonSince("0.8")
+    public int f065;
+    @JsonUntil("0.8")
+    public String f066;
+    @JsonSince("0.8")
+    @JsonUntil("0.9")
+    public int f067;
+    public String f068;
+    @JsonSince("0.9")
+    public int f069;
+    @JsonUntil("0.9")
+    public String f070;
+    @JsonSince("0.9")
+    @JsonUntil("1.0")
+    public int f071;
+    public String f072;
+    @JsonSince("0.1")
+    public int f073;
+    @JsonUntil("0.1")
+    public String f074;
+    @JsonSince("0.1")
+    @JsonUntil("0.2")
+    public int f075;
+    public String f076;
+    @JsonSince("0.2")
+    public int f077;
+    @JsonUntil("0.2")
+    public String f078;
+    @JsonSince("0.2")
+    @JsonUntil("0.3")
+    public int f079;
+    public String f080;
+    @JsonSince("0.3")
+    public int f081;
+    @JsonUntil("0.3")
+    public String f082;
+    @JsonSince("0.3")
+    @JsonUntil("0.4")
+    public int f083;
+    public String f084;
+    @JsonSince("0.4")
+    public int f085;
+    @JsonUntil("0.4")
+    public String f086;
+    @JsonSince("0.4")
+    @JsonUntil("0.5")
+    public int f087;
+    public String f088;
+    @JsonSince("0.5")
+    public int f089;
+    @JsonUntil("0.5")
+    public String f090;
+    @JsonSince("0.5")
+    @JsonUntil("0.6")
+    public int f091;
+    public String f092;
+    @JsonSince("0.6")
+    public int f093;
+    @JsonUntil("0.6")
+    public String f094;
+    @JsonSince("0.6")
+    @JsonUntil("0.7")
+    public int f095;
+    public String f096;
+    @JsonSince("0.7")
+    public int f097;
+    @JsonUntil("0.7")
+    public String f098;
+    @JsonSince("0.7")
+    @JsonUntil("0.8")
+    public int f099;
+    public String f100;
+    @JsonSince("0.8")
+    public int f101;
+    @JsonUntil("0.8")
+    public String f102;
+    @JsonSince("0.8")
+    @JsonUntil("0.9")
+    public int f103;
+    public String f104;
+    @JsonSince("0.9")
+    public int f105;
+    @JsonUntil("0.9")
+    public String f106;
+    @JsonSince("0.9")
+    @JsonUntil("1.0")
+    public int f107;
+    public String f108;
+    @JsonSince("0.1")
+    public int f109;
+    @JsonUntil("0.1")
+    public String f110;
+    @JsonSince("0.1")
+    @JsonUntil("0.2")
+    public int f111;
+    public String f112;
+    @JsonSince("0.2")
+    public int f113;
+    @JsonUntil("0.2")
+    public String f114;
+    @JsonSince("0.2")
+    @JsonUntil("0.3")
+    public int f115;
+    public String f116;
+    @JsonSince("0.3")
+    public int f117;
+    @JsonUntil("0.3")
+    public String f118;
+    @JsonSince("0.3")
+    @JsonUntil("0.4")
+    public int f119;
+    public String f120;
+    @JsonSince("0.4")
+    public int f121;
+    @JsonUntil("0.4")
+    public String f122;
+    @JsonSince("0.4")
+    @JsonUntil("0.5")
+    public int f123;
+    public String f124;
+    @JsonSince("0.5")
+    public int f125;
+    @JsonUntil("0.5")
+    public String f126;
+    @JsonSince("0.5")
+    @JsonUntil("0.6")
+    public int f127;
+    public String f128;
+    @JsonSince("0.6")
+    public int f129;
+    @JsonUntil("0.6")
+    public String f130;
+    @JsonSince("0.6")
+    @JsonUntil("0.7")
+    public int f131;
+    public String f132;
+    @JsonSince("0.7")
+    public int f133;
+    @JsonUntil("0.7")
+    public String f134;
+    @JsonSince("0.7")
+    @JsonUntil("0.8")
+    public int f135;
+    public String f136;
+    @JsonSince("0.8")
+    public int f137;
+    @JsonUntil("0.8")
+    public String f138;
+    @JsonSince("0.8")
+    @JsonUntil("0.9")
+    public int f139;
+    public String f140;
+    @JsonSince("0.9")
+    public int f141;
+    @JsonUntil("0.9")
+    public String f142;
+    @JsonSince("0.9")
+    @JsonUntil("1.0")
+    public int f143;
+    public String f144;
+    @JsonSince("0.1")
+    public int f145;
+    @JsonUntil("0.1")
+    public String f146;
+    @JsonSince("0.1")
+    @JsonUntil("0.2")
+    public int f147;
+    public String f148;
+    @JsonSince("0.2")
+    public int f149;
+    @JsonUntil("0.2")
+    public String f150;
+    @JsonSince("0.2")
+    @JsonUntil("0.3")
+    public int f151;
+    public String f152;
+    @JsonSince("0.3")
+    public int f153;
+    @JsonUntil("0.3")
+    public String f154;
+    @JsonSince("0.3")
+    @JsonUntil("0.4")
+    public int f155;
+    public String f156;
+    @JsonSince("0.4")
+    public int f157;
+    @JsonUntil("0.4")
+    public String f158;
+    @JsonSince("0.4")
+    @JsonUntil("0.5")
+    public int f159;
+    public String f160;
+    @JsonSince("0.5")
+    public int f161;
+    @JsonUntil("0.5")
+    public String f162;
+    @JsonSince("0.5")
+    @JsonUntil("0.6")
+    public int f163;
+    public String f164;
+    @JsonSince("0.6")
+    public int f165;
+    @JsonUntil("0.6")
+    public String f166;
+    @JsonSince("0.6")
+    @JsonUntil("0.7")
+    public int f167;
+    public String f168;
+    @JsonSince("0.7")
+    public int f169;
+    @JsonUntil("0.7")
+    public String f170;
+    @JsonSince("0.7")
+    @JsonUntil("0.8")
+    public int f171;
+    public String f172;
+    @JsonSince("0.8")
+    public int f173;
+    @JsonUntil("0.8")
+    public String f174;
+    @JsonSince("0.8")
+    @JsonUntil("0.9")
+    public int f175;
+    public String f176;
+    @JsonSince("0.9")
+    public int f177;
+    @JsonUntil("0.9")
+    public String f178;
+    @JsonSince("0.9")
+    @JsonUntil("1.0")
+    public int f179;
+    public String f180;
+    @JsonSince("0.1")
+    public int f181;
+    @JsonUntil("0.1")
+    public String f182;
+    @JsonSince("0.1")
+    @JsonUntil("0.2")
+    public int f183;
+    public String f184;
+    @JsonSince("0.2")
+    public int f185;
+    @JsonUntil("0.2")
+    public String f186;
+    @JsonSince("0.2")
+    @JsonUntil("0.3")
+    public int f187;
+    public String f188;
+    @JsonSince("0.3")
+    public int f189;
+    @JsonUntil("0.3")
+    public String f190;
+    @JsonSince("0.3")
+    @JsonUntil("0.4")
+    public int f191;
+    public String f192;
+    @JsonSince("0.4")
+    public int f193;
+    @JsonUntil("0.4")
+    public String f194;
+    @JsonSince("0.4")
+    @JsonUntil("0.5")
+    public int f195;
+    public String f196;
+    @JsonSince("0.5")
+    public int f197;
+    @JsonUntil("0.5")
+    public String f198;
+    @JsonSince("0.5")
+    @JsonUntil("0.6")
+    public int f199;
+
+    /**
+     * @return an instance with every field set
+     */
+    public static WideModel create() {
+        WideModel model = new WideModel();
+        model.f000 = "value000";
+        model.f001 = 1;
+        model.f002 = "value002";
+        model.f003 = 3;
+        model.f004 = "value004";
+        model.f005 = 5;
+        model.f006 = "value006";
+        model.f007 = 7;
+        model.f008 = "value008";
+        model.f009 = 9;
+        model.f010 = "value010";
+        model.f011 = 11;
+        model.f012 = "value012";
+        model.f013 = 13;
+        model.f014 = "value014";
+        model.f015 = 15;
+        model.f016 = "value016";
+        model.f017 = 17;
+        model.f018 = "value018";
+        model.f019 = 19;
+        model.f020 = "value020";
+        model.f021 = 21;
+        model.f022 = "value022";
+        model.f023 = 23;
+        model.f024 = "value024";
+        model.f025 = 25;
+        model.f026 = "value026";
+        model.f027 = 27;
+        model.f028 = "value028";
+        model.f029 = 29;
+        model.f030 = "value030";
+        model.f031 = 31;
+        model.f032 = "value032";
+        model.f033 = 33;
+        model.f034 = "value034";
+        model.f035 = 35;
+        model.f036 = "value036";
+        model.f037 = 37;
+        model.f038 = "value038";
+        model.f039 = 39;
+        model.f040 = "value040";
+        model.f041 = 41;
+        model.f042 = "value042";
+        model.f043 = 43;
+        model.f044 = "value044";
+        model.f045 = 45;
+        model.f046 = "value046";
+        model.f047 = 47;
+        model.f048 = "value048";
+        model.f049 = 49;
+        model.f050 = "value050";
+        model.f051 = 51;
+        model.f052 = "value052";
+        model.f053 = 53;
+        model.f054 = "value054";
+        model.f055 = 55;
+        model.f056 = "value056";
+        model.f057 = 57;
+        model.f058 = "value058";
+        model.f059 = 59;
+        model.f060 = "value060";
+        model.f061 = 61;
+        model.f062 = "value062";
+        model.f063 = 63;
+        model.f064 = "value064";
+        model.f065 = 65;
+        model.f066 = "value066";
+        model.f067 = 67;
+        model.f068 = "value068";
+        model.f069 = 69;
+        model.f070 = "value070";
+        model.f071 = 71;
+        model.f072 = "value072";
+        model.f073 = 73;
+        model.f074 = "value074";
+        model.f075 = 75;
+        model.f076 = "value076";
+        model.f077 = 77;
+        model.f078 = "value078";
+        model.f079 = 79;
+        model.f080 = "value080";
+        model.f081 = 81;
+        model.f082 = "value082";
+        model.f083 = 83;
+        model.f084 = "value084";
+        model.f085 = 85;
+        model.f086 = "value086";
+        model.f087 = 87;
+        model.f088 = "value088";
+        model.f089 = 89;
+        model.f090 = "value090";
+        model.f091 = 91;
+        model.f092 = "value092";
+        model.f093 = 93;
+        model.f094 = "value094";
+        model.f095 = 95;
+        model.f096 = "value096";
+        model.f097 = 97;
+        model.f098 = "value098";
+        model.f099 = 99;
+        model.f100 = "value100";
+        model.f101 = 101;
+        model.f102 = "value102";
+        model.f103 = 103;
+        model.f104 = "value104";
+        model.f105 = 105;
+        model.f106 = "value106";
+        model.f107 = 107;
+        model.f108 = "value108";
+        model.f109 = 109;
+        model.f110 = "value110";
+        model.f111 = 111;
+        model.f112 = "value112";
+        model.f113 = 113;
+        model.f114 = "value114";
+        model.f115 = 115;
+        model.f116 = "value116";
+        model.f117 = 117;
+        model.f118 = "value118";
+        model.f119 = 119;
+        model.f120 = "value120";
+        model.f121 = 121;
+        model.f122 = "value122";
+        model.f123 = 123;
+        model.f124 = "value124";
+        model.f125 = 125;
+        model.f126 = "value126";
+        model.f127 = 127;
+        model.f128 = "value128";
+        model.f129 = 129;
+        model.f130 = "value130";
+        model.f131 = 131;
+        model.f132 = "value132";
+        model.f133 = 133;
+        model.f134 = "value134";
+        model.f135 = 135;
+        model.f136 = "value136";
+        model.f137 = 137;
+        model.f138 = "value138";
+        model.f139 = 139;
+        model.f140 = "value140";
+        model.f141 = 141;
+        model.f142 = "value142";
+        model.f143 = 143;
+        model.f144 = "value144";
+        model.f145 = 145;
+        model.f146 = "value146";
+        model.f147 = 147;
+        model.f148 = "value148";
+        model.f149 = 149;
+        model.f150 = "value150";
+        model.f151 = 151;
+        model.f152 = "value152";
+        model.f153 = 153;
+        model.f154 = "value154";
+        model.f155 = 155;
+        model.f156 = "value156";
+        model.f157 = 157;
+        model.f158 = "value158";
+        model.f159 = 159;
+        model.f160 = "value160";
+        model.f161 = 161;
+        model.f162 = "value162";
+        model.f163 = 163;
+        model.f164 = "value164";
+        model.f165 = 165;
+        model.f166 = "value166";
+        model.f167 = 167;
+        model.f168 = "value168";
+        model.f169 = 169;
+        model.f170 = "value170";
+        model.f171 = 171;
+        model.f172 = "value172";
+        model.f173 = 173;
+        model.f174 = "value174";
+        model.f175 = 175;
+        model.f176 = "value176";
+        model.f177 = 177;
+        model.f178 = "value178";
+        model.f179 = 179;
+        model.f180 = "value180";
+        model.f181 = 181;
+        model.f182 = "value182";
+        model.f183 = 183;
+        model.f184 = "value184";
+        model.f185 = 185;
+        model.f186 = "value186";
+        model.f187 = 187;
+        model.f188 = "value188";
+        model.f189 = 189;
+        model.f190 = "value190";
+        model.f191 = 191;
+        model.f192 = "value192";
+        model.f193 = 193;
+        model.f194 = "value194";
+        model.f195 = 195;
+        model.f196 = "value196";
+        model.f197 = 197;
+        model.f198 = "value198";
+        model.f199 = 199;
+        return model;
+    }
+}
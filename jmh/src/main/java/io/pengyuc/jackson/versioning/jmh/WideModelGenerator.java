@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning.jmh;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Generates {@link WideModel}: 200 fields that repeat a pattern of four, unversioned, {@link
+ * io.pengyuc.jackson.versioning.annotations.JsonSince}, {@link io.pengyuc.jackson.versioning.annotations.JsonUntil}
+ * and both, with versions cycling from 0.1 to 0.9. It rewrites the source in place, keeping its license header; run
+ * it from the jmh directory, or pass the path of WideModel.java.
+ */
+public final class WideModelGenerator {
+    private static final String DEFAULT_PATH = "src/main/java/io/pengyuc/jackson/versioning/jmh/WideModel.java";
+    private static final int FIELDS = 200;
+    private static final int VERSIONS = 9;
+
+    private WideModelGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : DEFAULT_PATH);
+        String source = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        String header = source.substring(0, source.indexOf("package "));
+        Files.write(path, (header + generate()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String generate() {
+        StringBuilder out = new StringBuilder();
+        out.append("package io.pengyuc.jackson.versioning.jmh;\n")
+                .append('\n')
+                .append("import io.pengyuc.jackson.versioning.annotations.JsonSince;\n")
+                .append("import io.pengyuc.jackson.versioning.annotations.JsonUntil;\n")
+                .append("import io.pengyuc.jackson.versioning.annotations.JsonVersionProperty;\n")
+                .append("import io.pengyuc.jackson.versioning.annotations.JsonVersioned;\n")
+                .append('\n')
+                .append("/**\n")
+                .append(" * A wide model with ").append(FIELDS)
+                .append(" fields. The fields repeat a pattern of four: unversioned, {@link JsonSince},\n")
+                .append(" * {@link JsonUntil}, and both. The versions cycle from 0.1 to 0.9. Generated by\n")
+                .append(" * {@link WideModelGenerator}; change the pattern there and rerun it rather than editing\n")
+                .append(" * the fields one by one.\n")
+                .append(" */\n")
+                .append("@JsonVersioned(\"1.0\")\n")
+                .append("public class WideModel {\n")
+                .append("    @JsonVersionProperty\n")
+                .append("    public String version;\n")
+                .append('\n');
+        for (int i = 0; i < FIELDS; i++) {
+            int minor = i / 4 % VERSIONS + 1;
+            String since = "0." + minor;
+            String until = minor < VERSIONS ? "0." + (minor + 1) : "1.0";
+            switch (i % 4) {
+                case 1:
+                    out.append("    @JsonSince(\"").append(since).append("\")\n");
+                    break;
+                case 2:
+                    out.append("    @JsonUntil(\"").append(since).append("\")\n");
+                    break;
+                case 3:
+                    out.append("    @JsonSince(\"").append(since).append("\")\n");
+                    out.append("    @JsonUntil(\"").append(until).append("\")\n");
+                    break;
+                default:
+                    break;
+            }
+            out.append("    public ").append(i % 2 == 0 ? "String" : "int").append(' ').append(fieldName(i))
+                    .append(";\n");
+        }
+        out.append('\n')
+                .append("    /**\n")
+                .append("     * @return an instance with every field set\n")
+                .append("     */\n")
+                .append("    public static WideModel create() {\n")
+                .append("        WideModel model = new WideModel();\n");
+        for (int i = 0; i < FIELDS; i++) {
+            out.append("        model.").append(fieldName(i)).append(" = ")
+                    .append(i % 2 == 0 ? "\"value" + String.format("%03d", i) + "\"" : String.valueOf(i)).append(";\n");
+        }
+        out.append("        return model;\n")
+                .append("    }\n")
+                .append("}\n");
+        return out.toString();
+    }
+
+    private static String fieldName(int i) {
+        return String.format("f%03d", i);
+    }
+}
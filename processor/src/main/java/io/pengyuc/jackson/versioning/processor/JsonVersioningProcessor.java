@@ -0,0 +1,388 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning.processor;
+
+import io.pengyuc.jackson.versioning.Version;
+import io.pengyuc.jackson.versioning.annotations.JsonSince;
+import io.pengyuc.jackson.versioning.annotations.JsonUntil;
+import io.pengyuc.jackson.versioning.annotations.JsonVersionConverter;
+import io.pengyuc.jackson.versioning.annotations.JsonVersionProperty;
+import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Writes the version table of each {@link JsonVersioned} model at build time, so that the module does not have to
+ * look up the versioning annotations of the model and validate their versions at runtime.
+ * The table is the resource {@code META-INF/jackson-versioning/<class name>.versions}, in the format read by the
+ * module. It lists the versions of the fields and methods of the model and its super types that have
+ * {@link JsonSince} or {@link JsonUntil}, its {@link JsonVersionProperty}, and its {@link JsonVersionConverter}
+ * methods. The hash of the names of its bean properties is written as well, so that the module can tell a table
+ * written for another source of the model, ex: a stale resource, and then look up the annotations instead.
+ * <p>
+ * The versions and the converter signatures are checked while the table is written, so mistakes that would
+ * otherwise fail when the model is first serialized are reported by the compiler.
+ */
+@SupportedAnnotationTypes("io.pengyuc.jackson.versioning.annotations.JsonVersioned")
+public class JsonVersioningProcessor extends AbstractProcessor {
+    private static final String RESOURCE_PREFIX = "META-INF/jackson-versioning/";
+    private static final String RESOURCE_SUFFIX = ".versions";
+    private static final String OBJECT_NODE = "com.fasterxml.jackson.databind.node.ObjectNode";
+    private static final String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+    private static final String JSON_IGNORE = "com.fasterxml.jackson.annotation.JsonIgnore";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(JsonVersioned.class)) {
+            if (element.getKind() != ElementKind.CLASS)
+                continue;
+            TypeElement model = (TypeElement) element;
+            Map<String, String> table = buildTable(model);
+            if (table != null)
+                writeTable(model, table);
+        }
+        // The annotations are left to other processors as well
+        return false;
+    }
+
+    /**
+     * @return the entries of the table of the model, or null if the model has errors
+     */
+    private Map<String, String> buildTable(TypeElement model) {
+        Map<String, String> table = new TreeMap<String, String>();
+        Version modelVersion = parseVersion(model.getAnnotation(JsonVersioned.class).value(), model);
+        if (modelVersion == null)
+            return null;
+        table.put("model", model.getAnnotation(JsonVersioned.class).value());
+
+        boolean valid = true;
+        String versionPropertyName = null;
+        int converterCount = 0;
+        // The bean properties by the names implied by their members, and the names they are renamed to
+        Set<String> propertyNames = new TreeSet<String>();
+        Set<String> ignoredNames = new HashSet<String>();
+        Map<String, String> renames = new HashMap<String, String>();
+        // The model first, so that its members take precedence over the members they hide or override
+        Deque<TypeElement> types = new ArrayDeque<TypeElement>();
+        Set<TypeElement> visited = new HashSet<TypeElement>();
+        types.add(model);
+        while (!types.isEmpty()) {
+            TypeElement type = types.poll();
+            if (!visited.add(type) || type.getQualifiedName().contentEquals("java.lang.Object"))
+                continue;
+            for (Element member : type.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.METHOD && member.getAnnotation(JsonVersionConverter.class) != null) {
+                    if (type.getKind() != ElementKind.CLASS) {
+                        // Only the converters of the model and its super classes are run
+                        continue;
+                    }
+                    String converter = converterEntry(type, (ExecutableElement) member, modelVersion);
+                    if (converter == null) {
+                        valid = false;
+                        continue;
+                    }
+                    String key = "converter." + converterCount++;
+                    table.put(key, converter);
+                    valid &= putVersion(table, key + ".since", member.getAnnotation(JsonSince.class), member);
+                    valid &= putVersion(table, key + ".until", member.getAnnotation(JsonUntil.class), member);
+                    continue;
+                }
+
+                String key;
+                if (member.getKind() == ElementKind.FIELD)
+                    key = "field." + member.getSimpleName();
+                else if (member.getKind() == ElementKind.METHOD)
+                    key = "method." + member.getSimpleName() + "." + ((ExecutableElement) member).getParameters().size();
+                else
+                    continue;
+                if (member.getModifiers().contains(Modifier.STATIC))
+                    continue;
+                addPropertyName(member, propertyNames, ignoredNames, renames);
+
+                valid &= putVersion(table, key + ".since", member.getAnnotation(JsonSince.class), member);
+                valid &= putVersion(table, key + ".until", member.getAnnotation(JsonUntil.class), member);
+                checkRange(table, key, modelVersion, member);
+                if (member.getAnnotation(JsonVersionProperty.class) != null && !table.containsKey(key + ".versionProperty")) {
+                    String propertyName = propertyName(member);
+                    if (versionPropertyName != null && !versionPropertyName.equals(propertyName)) {
+                        error(member, "Only one @JsonVersionProperty is supported; %s already is", versionPropertyName);
+                        valid = false;
+                        continue;
+                    }
+                    versionPropertyName = propertyName;
+                    table.put(key + ".versionProperty", "true");
+                }
+            }
+
+            TypeMirror superclass = type.getSuperclass();
+            if (superclass.getKind() == TypeKind.DECLARED)
+                types.add((TypeElement) ((DeclaredType) superclass).asElement());
+            for (TypeMirror iface : type.getInterfaces())
+                types.add((TypeElement) ((DeclaredType) iface).asElement());
+        }
+        table.put("properties.hash", propertiesHash(propertyNames, ignoredNames, renames));
+        return valid ? table : null;
+    }
+
+    /**
+     * Adds the name of the bean property of the member, if it is one with the default visibility of jackson:
+     * public fields, getters and setters, and the members annotated with {@code @JsonProperty}
+     */
+    private static void addPropertyName(Element member, Set<String> propertyNames, Set<String> ignoredNames,
+                                        Map<String, String> renames) {
+        AnnotationMirror jsonProperty = findAnnotation(member, JSON_PROPERTY);
+        boolean visible = jsonProperty != null || member.getModifiers().contains(Modifier.PUBLIC);
+        String name = null;
+        if (member.getKind() == ElementKind.FIELD) {
+            if (visible && !member.getModifiers().contains(Modifier.TRANSIENT))
+                name = member.getSimpleName().toString();
+        } else if (visible) {
+            name = accessorName((ExecutableElement) member);
+            if (name == null && jsonProperty != null)
+                name = member.getSimpleName().toString();
+        }
+        if (name == null)
+            return;
+        propertyNames.add(name);
+        AnnotationMirror jsonIgnore = findAnnotation(member, JSON_IGNORE);
+        if (jsonIgnore != null && !Boolean.FALSE.equals(annotationValue(jsonIgnore)))
+            ignoredNames.add(name);
+        Object rename = annotationValue(jsonProperty);
+        if (rename != null && !rename.toString().isEmpty() && !renames.containsKey(name))
+            renames.put(name, rename.toString());
+    }
+
+    /**
+     * @return the property name of a getter or setter, or null if the method is neither
+     */
+    private static String accessorName(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        int parameterCount = method.getParameters().size();
+        TypeKind returnKind = method.getReturnType().getKind();
+        int prefixLength = 0;
+        if (parameterCount == 0 && name.startsWith("get") && returnKind != TypeKind.VOID)
+            prefixLength = 3;
+        else if (parameterCount == 0 && name.startsWith("is") && returnKind == TypeKind.BOOLEAN)
+            prefixLength = 2;
+        else if (parameterCount == 1 && name.startsWith("set"))
+            prefixLength = 3;
+        if (prefixLength == 0 || name.length() == prefixLength)
+            return null;
+        return Character.toLowerCase(name.charAt(prefixLength)) + name.substring(prefixLength + 1);
+    }
+
+    /**
+     * @return the hash of the sorted names of the bean properties joined by commas, as {@link String#hashCode} in
+     * hex, the same as the module computes from the properties jackson finds
+     */
+    private static String propertiesHash(Set<String> propertyNames, Set<String> ignoredNames,
+                                         Map<String, String> renames) {
+        Set<String> names = new TreeSet<String>();
+        for (String name : propertyNames) {
+            if (!ignoredNames.contains(name))
+                names.add(renames.containsKey(name) ? renames.get(name) : name);
+        }
+        StringBuilder joined = new StringBuilder();
+        for (String name : names) {
+            if (joined.length() > 0)
+                joined.append(',');
+            joined.append(name);
+        }
+        return Integer.toHexString(joined.toString().hashCode());
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName))
+                return annotation;
+        }
+        return null;
+    }
+
+    /**
+     * @return the value element of the annotation, or null if it is not set
+     */
+    private static Object annotationValue(AnnotationMirror annotation) {
+        if (annotation == null)
+            return null;
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value"))
+                return entry.getValue().getValue();
+        }
+        return null;
+    }
+
+    /**
+     * @return the declaring class, name and parameter type of the converter, or null if it is not a valid converter
+     */
+    private String converterEntry(TypeElement type, ExecutableElement method, Version modelVersion) {
+        Types types = processingEnv.getTypeUtils();
+        Elements elements = processingEnv.getElementUtils();
+        if (!method.getModifiers().contains(Modifier.STATIC)) {
+            error(method, "Version converter must be static");
+            return null;
+        }
+
+        String parameterType = "";
+        TypeMirror returnType = method.getReturnType();
+        if (method.getParameters().isEmpty()) {
+            TypeElement migration = elements.getTypeElement("io.pengyuc.jackson.versioning.JsonVersionMigration");
+            if (!types.isAssignable(returnType, migration.asType())) {
+                error(method, "Version converter without parameters must return JsonVersionMigration");
+                return null;
+            }
+        } else {
+            TypeElement objectNode = elements.getTypeElement(OBJECT_NODE);
+            if (objectNode == null) {
+                error(method, "Version converter takes an ObjectNode, but %s is not on the class path", OBJECT_NODE);
+                return null;
+            }
+            TypeMirror parameter = types.erasure(method.getParameters().get(0).asType());
+            if (method.getParameters().size() != 1 || !types.isAssignable(objectNode.asType(), parameter)) {
+                error(method, "Version converter must take a single ObjectNode");
+                return null;
+            }
+            if (returnType.getKind() != TypeKind.VOID && !types.isAssignable(returnType, objectNode.asType())) {
+                error(method, "Version converter must return void or ObjectNode");
+                return null;
+            }
+            parameterType = elements.getBinaryName((TypeElement) types.asElement(parameter)).toString();
+        }
+
+        JsonUntil until = method.getAnnotation(JsonUntil.class);
+        Version untilVersion = until == null ? null : parseVersion(until.value(), method);
+        if (untilVersion != null && untilVersion.compareTo(modelVersion) > 0) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Version converter is never run: its until version is after the model version", method);
+        }
+        return elements.getBinaryName(type) + "#" + method.getSimpleName() + "#" + parameterType;
+    }
+
+    /**
+     * Adds the version of the annotation unless a member that takes precedence already has one
+     * @return false if the version is not valid
+     */
+    private boolean putVersion(Map<String, String> table, String key, Object annotation, Element member) {
+        if (annotation == null || table.containsKey(key))
+            return true;
+        String versionStr = annotation instanceof JsonSince
+                ? ((JsonSince) annotation).value() : ((JsonUntil) annotation).value();
+        if (parseVersion(versionStr, member) == null)
+            return false;
+        table.put(key, versionStr);
+        return true;
+    }
+
+    private void checkRange(Map<String, String> table, String key, Version modelVersion, Element member) {
+        String since = table.get(key + ".since");
+        String until = table.get(key + ".until");
+        if (since != null && until != null && Version.fromString(since).equals(Version.fromString(until))) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Property is in no version: its since and until versions are the same", member);
+        } else if (since != null && until == null && Version.fromString(since).compareTo(modelVersion) > 0) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Property is in no version: its since version is after the model version", member);
+        }
+    }
+
+    private Version parseVersion(String versionStr, Element element) {
+        try {
+            return Version.fromString(versionStr);
+        } catch (IllegalArgumentException e) {
+            error(element, "Invalid version \"%s\": %s", versionStr, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the bean property name of a field, getter or setter
+     */
+    private static String propertyName(Element member) {
+        String name = member.getSimpleName().toString();
+        if (member.getKind() == ElementKind.METHOD) {
+            int prefixLength = name.startsWith("is") ? 2 : (name.startsWith("get") || name.startsWith("set") ? 3 : 0);
+            if (prefixLength > 0 && name.length() > prefixLength)
+                name = Character.toLowerCase(name.charAt(prefixLength)) + name.substring(prefixLength + 1);
+        }
+        return name;
+    }
+
+    private void writeTable(TypeElement model, Map<String, String> table) {
+        String binaryName = processingEnv.getElementUtils().getBinaryName(model).toString();
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(
+                    StandardLocation.CLASS_OUTPUT, "", RESOURCE_PREFIX + binaryName + RESOURCE_SUFFIX, model);
+            Writer writer = resource.openWriter();
+            try {
+                writer.write("# Version table of " + model.getQualifiedName() + ", written by "
+                        + getClass().getSimpleName() + "\n");
+                for (Map.Entry<String, String> entry : table.entrySet())
+                    writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(model, "Failed to write the version table: %s", e.getMessage());
+        }
+    }
+
+    private void error(Element element, String format, Object... args) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format(format, args), element);
+    }
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning.processor;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compiles models with the processor and reads the tables it writes
+ */
+public class TestJsonVersioningProcessor {
+    private static final String CAR = "models.Car";
+    private static final String CAR_SOURCE = "package models;\n"
+            + "import com.fasterxml.jackson.annotation.JsonIgnore;\n"
+            + "import com.fasterxml.jackson.annotation.JsonProperty;\n"
+            + "import io.pengyuc.jackson.versioning.annotations.*;\n"
+            + "@JsonVersioned(\"1.0\")\n"
+            + "public class Car {\n"
+            + "    @JsonVersionProperty\n"
+            + "    public String version;\n"
+            + "    public String name;\n"
+            + "    @JsonSince(\"0.8\")\n"
+            + "    public Integer seats;\n"
+            + "    @JsonProperty(\"doorCount\")\n"
+            + "    private int doors;\n"
+            + "    @JsonIgnore\n"
+            + "    public String internal;\n"
+            + "    private String legacy;\n"
+            + "    private String secret;\n"
+            + "    @JsonUntil(\"0.5\")\n"
+            + "    public String getLegacy() { return legacy; }\n"
+            + "    public void setLegacy(String legacy) { this.legacy = legacy; }\n"
+            + "}\n";
+
+    private File outputDir;
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void setup() throws IOException {
+        outputDir = Files.createTempDirectory("jackson-versioning-processor").toFile();
+        diagnostics = new DiagnosticCollector<JavaFileObject>();
+    }
+
+    @After
+    public void cleanup() {
+        delete(outputDir);
+    }
+
+    @Test
+    public void versionedModel_ShouldWriteTheVersionsOfItsMembers() throws IOException {
+        Assert.assertTrue(compile(CAR, CAR_SOURCE));
+
+        Properties table = readTable(CAR);
+        Assert.assertEquals("1.0", table.getProperty("model"));
+        Assert.assertEquals("0.8", table.getProperty("field.seats.since"));
+        Assert.assertEquals("0.5", table.getProperty("method.getLegacy.0.until"));
+        Assert.assertNull(table.getProperty("field.name.since"));
+        Assert.assertNull(table.getProperty("field.name.until"));
+    }
+
+    @Test
+    public void versionedModel_ShouldWriteItsVersionProperty() throws IOException {
+        Assert.assertTrue(compile(CAR, CAR_SOURCE));
+
+        Properties table = readTable(CAR);
+        Assert.assertEquals("true", table.getProperty("field.version.versionProperty"));
+        Assert.assertNull(table.getProperty("field.name.versionProperty"));
+    }
+
+    @Test
+    public void versionedModel_ShouldWriteTheHashOfThePropertiesJacksonFinds() throws Exception {
+        Assert.assertTrue(compile(CAR, CAR_SOURCE));
+
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{outputDir.toURI().toURL()},
+                getClass().getClassLoader());
+        try {
+            ObjectMapper mapper = new ObjectMapper();
+            BeanDescription beanDesc = mapper.getSerializationConfig()
+                    .introspect(mapper.constructType(classLoader.loadClass(CAR)));
+            Set<String> names = new TreeSet<String>();
+            for (BeanPropertyDefinition property : beanDesc.findProperties())
+                names.add(property.getName());
+
+            Assert.assertEquals("[doorCount, legacy, name, seats, version]", names.toString());
+            Assert.assertEquals(Integer.toHexString("doorCount,legacy,name,seats,version".hashCode()),
+                    readTable(CAR).getProperty("properties.hash"));
+        } finally {
+            classLoader.close();
+        }
+    }
+
+    @Test
+    public void invalidVersion_ShouldBeACompileError() throws IOException {
+        Assert.assertFalse(compile("models.Bus", "package models;\n"
+                + "import io.pengyuc.jackson.versioning.annotations.*;\n"
+                + "@JsonVersioned(\"1.0\")\n"
+                + "public class Bus {\n"
+                + "    @JsonSince(\"0.a\")\n"
+                + "    public Integer seats;\n"
+                + "}\n"));
+
+        assertError("Invalid version \"0.a\"");
+        Assert.assertNull(findTable("models.Bus"));
+    }
+
+    @Test
+    public void invalidModelVersion_ShouldBeACompileError() throws IOException {
+        Assert.assertFalse(compile("models.Van", "package models;\n"
+                + "import io.pengyuc.jackson.versioning.annotations.*;\n"
+                + "@JsonVersioned(\".1\")\n"
+                + "public class Van {\n"
+                + "    public Integer seats;\n"
+                + "}\n"));
+
+        assertError("Invalid version \".1\"");
+        Assert.assertNull(findTable("models.Van"));
+    }
+
+    /**
+     * @return whether the source compiled without errors
+     */
+    private boolean compile(String className, final String source) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager =
+                compiler.getStandardFileManager(diagnostics, null, Charset.forName("UTF-8"));
+        try {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(outputDir));
+            JavaFileObject sourceFile = new SimpleJavaFileObject(
+                    URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-classpath", System.getProperty("java.class.path")), null,
+                    Collections.singletonList(sourceFile));
+            task.setProcessors(Collections.singletonList(new JsonVersioningProcessor()));
+            return task.call();
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private void assertError(String message) {
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getMessage(null).contains(message))
+                return;
+        }
+        Assert.fail("No error with " + message + " in " + diagnostics.getDiagnostics());
+    }
+
+    private Properties readTable(String className) throws IOException {
+        File file = findTable(className);
+        Assert.assertNotNull("No table for " + className, file);
+        Properties table = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            table.load(in);
+        } finally {
+            in.close();
+        }
+        return table;
+    }
+
+    private File findTable(String className) {
+        File file = new File(outputDir, "META-INF/jackson-versioning/" + className + ".versions");
+        return file.exists() ? file : null;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,653 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.FormatSchema;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.PrettyPrinter;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.core.util.Instantiatable;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.google.common.io.ByteStreams;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Generator that writes every token to a set of target generators, one per json version. Only the active targets
+ * are written to: {@link JsonVersioningSerializer} narrows them down to the targets whose versions have a property
+ * while the property is written, so the serializer of the property runs once for all of them.
+ * <p>
+ * A value shared by several targets can be encoded once: between {@link #startSharedValue} and
+ * {@link #endSharedValue} the tokens are encoded into a buffer, which is then copied to each active target as a raw
+ * value. This only holds while the value is the same in all of them, so a versioned bean in the value that would be
+ * written differently for some of the targets aborts the sharing with {@link #abortSharedValue}, and the value is
+ * written again token by token. Values are only shared between plain json generators without a pretty printer.
+ * <p>
+ * The output context and the current value are those of the first active target, or of the buffer while a value is
+ * shared.
+ */
+final class FanOutGenerator extends JsonGeneratorDelegate {
+    static final int MAX_TARGETS = Long.SIZE;
+
+    private final JsonGenerator[] targets;
+    private final Version[] versions;
+    private long activeTargets;
+    private JsonGenerator[] activeGenerators;
+
+    // The factory of the buffer of shared values, or null if the targets cannot take raw json values
+    private final JsonFactory sharingFactory;
+    private final SharedValueBuffer sharedValue = new SharedValueBuffer();
+    // Created with the first shared value, and again when the configuration of the targets changes
+    private JsonGenerator sharedValueGenerator;
+    private JsonGenerator[] groupGenerators;
+    private boolean sharing;
+    // The name of the field of the shared value, held back until the value is copied
+    private String sharedFieldName;
+    private SerializableString sharedSerializedFieldName;
+
+    /**
+     * @param factory the factory of the targets, to encode the values shared by several of them, or null if the
+     *                values are not to be shared
+     */
+    FanOutGenerator(List<? extends JsonGenerator> targets, List<Version> versions, JsonFactory factory) {
+        super(targets.get(0), false);
+        checkArgument(targets.size() == versions.size(), "%s generators for %s versions",
+                targets.size(), versions.size());
+        checkArgument(targets.size() <= MAX_TARGETS, "At most %s versions can be written at once", MAX_TARGETS);
+        this.targets = targets.toArray(new JsonGenerator[targets.size()]);
+        this.versions = versions.toArray(new Version[versions.size()]);
+        setActiveTargets(this.targets.length == MAX_TARGETS ? -1L : (1L << this.targets.length) - 1);
+
+        boolean plainJson = factory != null && JsonFactory.FORMAT_NAME_JSON.equals(factory.getFormatName());
+        for (JsonGenerator target : this.targets) {
+            while (target instanceof JsonGeneratorDelegate)
+                target = ((JsonGeneratorDelegate) target).getDelegate();
+            plainJson &= target instanceof JsonGeneratorImpl;
+        }
+        this.sharingFactory = plainJson ? factory : null;
+    }
+
+    int getTargetCount() {
+        return targets.length;
+    }
+
+    Version getTargetVersion(int target) {
+        return versions[target];
+    }
+
+    /**
+     * @return the targets written to, as a bit set of their indexes
+     */
+    long getActiveTargets() {
+        return activeTargets;
+    }
+
+    void setActiveTargets(long activeTargets) {
+        if (activeTargets == this.activeTargets)
+            return;
+        checkArgument(activeTargets != 0, "No target to write to");
+        checkState(!sharing, "The targets of a shared value cannot change");
+        JsonGenerator[] generators = new JsonGenerator[Long.bitCount(activeTargets)];
+        int i = 0;
+        for (long remaining = activeTargets; remaining != 0; remaining &= remaining - 1)
+            generators[i++] = targets[Long.numberOfTrailingZeros(remaining)];
+        this.activeTargets = activeTargets;
+        this.activeGenerators = generators;
+        this.delegate = generators[0];
+    }
+
+    /**
+     * Encodes the value written next, with the name of its field, into the buffer instead of the active targets
+     *
+     * @return false if the value cannot be shared and is to be written to the targets as usual
+     */
+    boolean startSharedValue() throws IOException {
+        if (sharingFactory == null || sharing || activeGenerators.length < 2 || targets[0].getPrettyPrinter() != null)
+            return false;
+        if (sharedValueGenerator == null)
+            sharedValueGenerator = createSharedValueGenerator();
+        sharing = true;
+        groupGenerators = activeGenerators;
+        activeGenerators = new JsonGenerator[] {sharedValueGenerator};
+        delegate = sharedValueGenerator;
+        return true;
+    }
+
+    /**
+     * @return whether a value is being encoded into the buffer
+     */
+    boolean isSharingValue() {
+        return sharing;
+    }
+
+    /**
+     * Copies the encoded value, and the name of its field, to each of the active targets
+     */
+    void endSharedValue() throws IOException {
+        checkState(sharing, "No shared value");
+        stopSharing();
+        sharedValueGenerator.flush();
+        try {
+            if (sharedValue.size() == 0)
+                return;
+            for (JsonGenerator generator : activeGenerators) {
+                if (sharedSerializedFieldName != null)
+                    generator.writeFieldName(sharedSerializedFieldName);
+                else if (sharedFieldName != null)
+                    generator.writeFieldName(sharedFieldName);
+                generator.writeRawValue(sharedValue.chars(), 0, sharedValue.size());
+            }
+        } finally {
+            clearSharedValue();
+        }
+    }
+
+    /**
+     * Drops what was encoded of the shared value, so that it can be written to the targets token by token
+     */
+    void discardSharedValue() {
+        if (!sharing)
+            return;
+        stopSharing();
+        clearSharedValue();
+        // The buffer generator may be left in the middle of the value
+        sharedValueGenerator = null;
+    }
+
+    /**
+     * @return the exception to throw when the shared value is not the same in all of its targets; it makes its way
+     * through the serializers of the enclosing values, which wrap other exceptions
+     */
+    JsonMappingException abortSharedValue() {
+        return new SharingAbortedException(this);
+    }
+
+    private void stopSharing() {
+        sharing = false;
+        activeGenerators = groupGenerators;
+        delegate = groupGenerators[0];
+        groupGenerators = null;
+    }
+
+    private void clearSharedValue() {
+        sharedValue.reset();
+        sharedFieldName = null;
+        sharedSerializedFieldName = null;
+    }
+
+    private JsonGenerator createSharedValueGenerator() throws IOException {
+        final JsonGenerator first = targets[0];
+        JsonGenerator generator = sharingFactory.createGenerator(sharedValue);
+        generator.setCodec(first.getCodec());
+        generator.overrideStdFeatures(first.getFeatureMask(), -1);
+        generator.setHighestNonEscapedChar(first.getHighestEscapedChar());
+        generator.setCharacterEscapes(first.getCharacterEscapes());
+        // The values are written one after the other at the root of the buffer
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    /**
+     * @return whether the field name is the one of the shared value, which is held back
+     */
+    private boolean isSharedFieldName() {
+        return sharing && sharedValueGenerator.getOutputContext().inRoot();
+    }
+
+    /*
+     * Configuration, applied to all the targets
+     */
+
+    @Override
+    public JsonGenerator setCodec(ObjectCodec oc) {
+        for (JsonGenerator target : targets)
+            target.setCodec(oc);
+        // The buffer generator takes the new configuration when it is created again
+        if (!sharing)
+            sharedValueGenerator = null;
+        return this;
+    }
+
+    @Override
+    public void setSchema(FormatSchema schema) {
+        for (JsonGenerator target : targets)
+            target.setSchema(schema);
+    }
+
+    @Override
+    public JsonGenerator enable(Feature f) {
+        for (JsonGenerator target : targets)
+            target.enable(f);
+        if (!sharing)
+            sharedValueGenerator = null;
+        return this;
+    }
+
+    @Override
+    public JsonGenerator disable(Feature f) {
+        for (JsonGenerator target : targets)
+            target.disable(f);
+        if (!sharing)
+            sharedValueGenerator = null;
+        return this;
+    }
+
+    @Override
+    @Deprecated
+    public JsonGenerator setFeatureMask(int values) {
+        for (JsonGenerator target : targets)
+            target.setFeatureMask(values);
+        if (!sharing)
+            sharedValueGenerator = null;
+        return this;
+    }
+
+    @Override
+    public JsonGenerator overrideStdFeatures(int values, int mask) {
+        for (JsonGenerator target : targets)
+            target.overrideStdFeatures(values, mask);
+        if (!sharing)
+            sharedValueGenerator = null;
+        return this;
+    }
+
+    @Override
+    public JsonGenerator overrideFormatFeatures(int values, int mask) {
+        for (JsonGenerator target : targets)
+            target.overrideFormatFeatures(values, mask);
+        return this;
+    }
+
+    @Override
+    public JsonGenerator setPrettyPrinter(PrettyPrinter pp) {
+        for (JsonGenerator target : targets) {
+            // Pretty printers keep the nesting of the generator they print for
+            target.setPrettyPrinter(pp instanceof Instantiatable<?>
+                    ? (PrettyPrinter) ((Instantiatable<?>) pp).createInstance() : pp);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonGenerator useDefaultPrettyPrinter() {
+        for (JsonGenerator target : targets)
+            target.useDefaultPrettyPrinter();
+        return this;
+    }
+
+    @Override
+    public JsonGenerator setHighestNonEscapedChar(int charCode) {
+        for (JsonGenerator target : targets)
+            target.setHighestNonEscapedChar(charCode);
+        if (!sharing)
+            sharedValueGenerator = null;
+        return this;
+    }
+
+    @Override
+    public JsonGenerator setCharacterEscapes(CharacterEscapes esc) {
+        for (JsonGenerator target : targets)
+            target.setCharacterEscapes(esc);
+        if (!sharing)
+            sharedValueGenerator = null;
+        return this;
+    }
+
+    @Override
+    public JsonGenerator setRootValueSeparator(SerializableString sep) {
+        for (JsonGenerator target : targets)
+            target.setRootValueSeparator(sep);
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (JsonGenerator target : targets)
+            target.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (JsonGenerator target : targets)
+            target.close();
+    }
+
+    /*
+     * Output, written to the active targets
+     */
+
+    @Override
+    public void setCurrentValue(Object v) {
+        for (JsonGenerator generator : activeGenerators)
+            generator.setCurrentValue(v);
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeStartArray();
+    }
+
+    @Override
+    public void writeStartArray(int size) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeStartArray(size);
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeEndArray();
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeStartObject();
+    }
+
+    @Override
+    public void writeStartObject(Object forValue) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeStartObject(forValue);
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeEndObject();
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+        if (isSharedFieldName()) {
+            sharedFieldName = name;
+            return;
+        }
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeFieldName(name);
+    }
+
+    @Override
+    public void writeFieldName(SerializableString name) throws IOException {
+        if (isSharedFieldName()) {
+            sharedSerializedFieldName = name;
+            return;
+        }
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeFieldName(name);
+    }
+
+    @Override
+    public void writeFieldId(long id) throws IOException {
+        if (isSharedFieldName()) {
+            sharedFieldName = Long.toString(id);
+            return;
+        }
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeFieldId(id);
+    }
+
+    @Override
+    public void writeArray(int[] array, int offset, int length) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeArray(array, offset, length);
+    }
+
+    @Override
+    public void writeArray(long[] array, int offset, int length) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeArray(array, offset, length);
+    }
+
+    @Override
+    public void writeArray(double[] array, int offset, int length) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeArray(array, offset, length);
+    }
+
+    @Override
+    public void writeString(String text) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeString(text);
+    }
+
+    @Override
+    public void writeString(char[] text, int offset, int len) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeString(text, offset, len);
+    }
+
+    @Override
+    public void writeString(SerializableString text) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeString(text);
+    }
+
+    @Override
+    public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeRawUTF8String(text, offset, length);
+    }
+
+    @Override
+    public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeUTF8String(text, offset, length);
+    }
+
+    @Override
+    public void writeRaw(String text) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeRaw(text);
+    }
+
+    @Override
+    public void writeRaw(String text, int offset, int len) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeRaw(text, offset, len);
+    }
+
+    @Override
+    public void writeRaw(SerializableString raw) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeRaw(raw);
+    }
+
+    @Override
+    public void writeRaw(char[] text, int offset, int len) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeRaw(text, offset, len);
+    }
+
+    @Override
+    public void writeRaw(char c) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeRaw(c);
+    }
+
+    @Override
+    public void writeRawValue(String text) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeRawValue(text);
+    }
+
+    @Override
+    public void writeRawValue(String text, int offset, int len) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeRawValue(text, offset, len);
+    }
+
+    @Override
+    public void writeRawValue(char[] text, int offset, int len) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeRawValue(text, offset, len);
+    }
+
+    @Override
+    public void writeBinary(Base64Variant b64variant, byte[] data, int offset, int len) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeBinary(b64variant, data, offset, len);
+    }
+
+    @Override
+    public int writeBinary(Base64Variant b64variant, InputStream data, int dataLength) throws IOException {
+        // The stream can only be read once, so it is read in full for all the targets
+        byte[] bytes = dataLength < 0 ? ByteStreams.toByteArray(data)
+                : ByteStreams.toByteArray(ByteStreams.limit(data, dataLength));
+        writeBinary(b64variant, bytes, 0, bytes.length);
+        return bytes.length;
+    }
+
+    @Override
+    public void writeNumber(short v) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(int v) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(long v) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(BigInteger v) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(double v) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(float v) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(BigDecimal v) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeNumber(v);
+    }
+
+    @Override
+    public void writeNumber(String encodedValue) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeNumber(encodedValue);
+    }
+
+    @Override
+    public void writeBoolean(boolean state) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeBoolean(state);
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeNull();
+    }
+
+    @Override
+    public void writeOmittedField(String fieldName) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeOmittedField(fieldName);
+    }
+
+    @Override
+    public void writeObjectId(Object id) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeObjectId(id);
+    }
+
+    @Override
+    public void writeObjectRef(Object id) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeObjectRef(id);
+    }
+
+    @Override
+    public void writeTypeId(Object id) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeTypeId(id);
+    }
+
+    @Override
+    public void writeEmbeddedObject(Object object) throws IOException {
+        for (JsonGenerator generator : activeGenerators)
+            generator.writeEmbeddedObject(object);
+    }
+
+    /**
+     * Buffer of the encoded shared value, read without copying
+     */
+    private static final class SharedValueBuffer extends CharArrayWriter {
+        char[] chars() {
+            return buf;
+        }
+    }
+
+    /**
+     * Thrown through the serializers of a shared value when it is not the same in all of its targets
+     */
+    static final class SharingAbortedException extends JsonMappingException {
+        private static final long serialVersionUID = 1L;
+
+        SharingAbortedException(JsonGenerator generator) {
+            super(generator, "Shared value differs between json versions");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            // Control flow only
+            return this;
+        }
+    }
+}
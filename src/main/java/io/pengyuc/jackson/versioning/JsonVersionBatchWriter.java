@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Writes a batch of values in one json version, as a json array or as newline-delimited json. The version is
+ * resolved once for the whole batch; json version properties that are set still take precedence, as they do when
+ * a single value is written.
+ * <p>
+ * {@link #write} streams the values through a {@link SequenceWriter} on the calling thread, without holding the
+ * output in memory. {@link #writeParallel} serializes chunks of the values on a {@link ForkJoinPool}, each into its
+ * own buffer, and writes the buffers out in order; the output is the same.
+ * <pre>
+ * JsonVersionBatchWriter batchWriter = JsonVersionBatchWriter.forVersion(mapper.writer(), "0.9");
+ * batchWriter.writeParallel(cars, outputStream, pool);
+ * </pre>
+ */
+public final class JsonVersionBatchWriter {
+    /** The default number of values serialized by each task of a parallel write */
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    public enum Format {
+        /** The values are the elements of a json array */
+        ARRAY,
+        /** Each value is on its own line */
+        NEWLINE_DELIMITED
+    }
+
+    private static final SerializedString ELEMENT_SEPARATOR = new SerializedString(",");
+    private static final SerializedString LINE_SEPARATOR = new SerializedString("\n");
+
+    private final ObjectWriter writer;
+    private final Version version;
+    private final Format format;
+    private final int chunkSize;
+
+    private JsonVersionBatchWriter(ObjectWriter writer, Version version, Format format, int chunkSize) {
+        this.writer = writer;
+        this.version = version;
+        this.format = format;
+        this.chunkSize = chunkSize;
+    }
+
+    public static JsonVersionBatchWriter forVersion(ObjectWriter writer, Version version) {
+        checkNotNull(version);
+        // The version is handed to the serializers as is, so it is never parsed again
+        return new JsonVersionBatchWriter(writer.withAttribute(Version.JsonVersionConfigSerializing, version),
+                version, Format.ARRAY, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static JsonVersionBatchWriter forVersion(ObjectWriter writer, String version) {
+        return forVersion(writer, Version.fromString(version));
+    }
+
+    public JsonVersionBatchWriter withFormat(Format format) {
+        return new JsonVersionBatchWriter(writer, version, checkNotNull(format), chunkSize);
+    }
+
+    /**
+     * @param chunkSize the number of values serialized by each task of a parallel write
+     */
+    public JsonVersionBatchWriter withChunkSize(int chunkSize) {
+        checkArgument(chunkSize > 0, "Chunk size must be positive: %s", chunkSize);
+        return new JsonVersionBatchWriter(writer, version, format, chunkSize);
+    }
+
+    public Version getVersion() {
+        return version;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Writes the values one after the other, encoded in UTF-8. The output stream is closed afterwards, as
+     * {@link ObjectWriter#writeValue(OutputStream, Object)} would close it.
+     */
+    public void write(Iterable<?> values, OutputStream out) throws IOException {
+        JsonGenerator generator = writer.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        try {
+            if (format == Format.ARRAY) {
+                SequenceWriter sequenceWriter = writer.writeValues(generator).init(true);
+                for (Object value : values)
+                    sequenceWriter.write(value);
+                sequenceWriter.close();
+            } else {
+                writeLines(values, generator);
+            }
+        } finally {
+            generator.close();
+        }
+    }
+
+    /**
+     * Serializes chunks of the values in parallel on the pool and writes them in order, encoded in UTF-8. The output
+     * stream is closed afterwards.
+     */
+    public void writeParallel(List<?> values, OutputStream out, ForkJoinPool pool) throws IOException {
+        try {
+            final int chunkCount = (values.size() + chunkSize - 1) / chunkSize;
+            final byte[][] chunks = new byte[chunkCount][];
+            final IOException[] failures = new IOException[chunkCount];
+            pool.invoke(new ChunkTask(values, chunks, failures, 0, chunkCount));
+            for (IOException failure : failures) {
+                if (failure != null)
+                    throw failure;
+            }
+
+            if (format == Format.ARRAY)
+                out.write('[');
+            for (int i = 0; i < chunkCount; i++) {
+                if (i > 0 && format == Format.ARRAY)
+                    out.write(',');
+                out.write(chunks[i]);
+                if (format == Format.NEWLINE_DELIMITED)
+                    out.write('\n');
+            }
+            if (format == Format.ARRAY)
+                out.write(']');
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Serializes the values as root-level values separated as in the output, so that chunks only need to be joined
+     */
+    private byte[] writeChunk(List<?> values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator generator = writer.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        try {
+            generator.setRootValueSeparator(format == Format.ARRAY ? ELEMENT_SEPARATOR : LINE_SEPARATOR);
+            SequenceWriter sequenceWriter = writer.writeValues(generator);
+            for (Object value : values)
+                sequenceWriter.write(value);
+            sequenceWriter.close();
+        } finally {
+            generator.close();
+        }
+        return out.toByteArray();
+    }
+
+    private void writeLines(Iterable<?> values, JsonGenerator generator) throws IOException {
+        generator.setRootValueSeparator(LINE_SEPARATOR);
+        SequenceWriter sequenceWriter = writer.writeValues(generator);
+        boolean written = false;
+        for (Object value : values) {
+            sequenceWriter.write(value);
+            written = true;
+        }
+        sequenceWriter.close();
+        if (written)
+            generator.writeRaw('\n');
+    }
+
+    /**
+     * Serializes a range of chunks, splitting it in halves until a single chunk is left
+     */
+    private final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<?> values;
+        private final byte[][] chunks;
+        private final IOException[] failures;
+        private final int fromChunk;
+        private final int toChunk;
+
+        ChunkTask(List<?> values, byte[][] chunks, IOException[] failures, int fromChunk, int toChunk) {
+            this.values = values;
+            this.chunks = chunks;
+            this.failures = failures;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                final int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new ChunkTask(values, chunks, failures, fromChunk, middle),
+                        new ChunkTask(values, chunks, failures, middle, toChunk));
+            } else if (toChunk > fromChunk) {
+                try {
+                    chunks[fromChunk] = writeChunk(values.subList(fromChunk * chunkSize,
+                            Math.min(values.size(), (fromChunk + 1) * chunkSize)));
+                } catch (IOException e) {
+                    // Reported by the calling thread, once all the chunks are done
+                    failures[fromChunk] = e;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import io.pengyuc.jackson.versioning.annotations.JsonSince;
+import io.pengyuc.jackson.versioning.annotations.JsonUntil;
+import io.pengyuc.jackson.versioning.annotations.JsonVersionConverter;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The {@link JsonVersionConverter} methods of a model, found once when its serializer or deserializer is built.
+ * A converter upgrades the json of the versions in its {@link JsonSince} and {@link JsonUntil} range to its until
+ * version. The converters are ordered by their until and since versions, and the chain that upgrades a json version
+ * to the model version is compiled into a {@link ConversionPlan} the first time that version is used.
+ * A converter either takes an ObjectNode, or declares a {@link JsonVersionMigration} that is applied to the token
+ * stream.
+ */
+final class JsonVersionConverters {
+    private static final Comparator<Converter> CONVERTER_ORDER = new Comparator<Converter>() {
+        @Override
+        public int compare(Converter c1, Converter c2) {
+            // Converters without an until version run last, and those without a since version first
+            int result = compareVersions(c1.range.getUntilVersion(), c2.range.getUntilVersion(), 1);
+            if (result == 0)
+                result = compareVersions(c1.range.getSinceVersion(), c2.range.getSinceVersion(), -1);
+            return result != 0 ? result : c1.method.getName().compareTo(c2.method.getName());
+        }
+
+        private int compareVersions(Version v1, Version v2, int nullOrder) {
+            if (v1 == null || v2 == null)
+                return v1 == v2 ? 0 : (v1 == null ? nullOrder : -nullOrder);
+            return v1.compareTo(v2);
+        }
+    };
+
+    private final List<Converter> converters;
+    private final Version modelVersion;
+    private final VersionIntervals versionIntervals;
+    // The conversion plan from each version interval, built when the interval is first deserialized
+    private final AtomicReferenceArray<ConversionPlan> plansByInterval;
+
+    private JsonVersionConverters(List<Converter> converters, Version modelVersion) {
+        this.converters = converters;
+        this.modelVersion = modelVersion;
+        this.versionIntervals = VersionIntervals.of(getRanges());
+        this.plansByInterval = new AtomicReferenceArray<ConversionPlan>(versionIntervals.size());
+    }
+
+    /**
+     * Finds the converter methods declared by the type and its super classes.
+     * A converter method must be static. It either takes a single {@link ObjectNode} and changes it in place or
+     * returns the converted node, or it takes no parameters and returns a {@link JsonVersionMigration}.
+     */
+    static JsonVersionConverters forType(Class<?> type, Version modelVersion) {
+        List<Converter> converters = Lists.newArrayList();
+        for (Class<?> cls = type; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            for (Method method : cls.getDeclaredMethods()) {
+                if (!method.isAnnotationPresent(JsonVersionConverter.class))
+                    continue;
+                addConverter(converters, method, VersionRange.of(
+                        method.getAnnotation(JsonSince.class), method.getAnnotation(JsonUntil.class)));
+            }
+        }
+        Collections.sort(converters, CONVERTER_ORDER);
+        return new JsonVersionConverters(ImmutableList.copyOf(converters), modelVersion);
+    }
+
+    /**
+     * Looks up the converter methods listed in the version table of the type, instead of going through all the
+     * methods of the type and its super classes. Without a table, the methods are found from their annotations.
+     */
+    static JsonVersionConverters forType(Class<?> type, Version modelVersion, VersionTable versionTable) {
+        if (versionTable == null)
+            return forType(type, modelVersion);
+        List<Converter> converters = Lists.newArrayList();
+        for (VersionTable.ConverterEntry entry : versionTable.getConverters()) {
+            Class<?> declaringClass = type;
+            while (declaringClass != null && !declaringClass.getName().equals(entry.declaringClassName))
+                declaringClass = declaringClass.getSuperclass();
+            checkArgument(declaringClass != null, "Version table of %s is out of date: %s is not a super class",
+                    type.getName(), entry.declaringClassName);
+            try {
+                Method method = entry.parameterTypeName == null
+                        ? declaringClass.getDeclaredMethod(entry.methodName)
+                        : declaringClass.getDeclaredMethod(entry.methodName,
+                                Class.forName(entry.parameterTypeName, false, ObjectNode.class.getClassLoader()));
+                addConverter(converters, method, entry.range);
+            } catch (NoSuchMethodException | ClassNotFoundException e) {
+                throw new IllegalArgumentException("Version table of " + type.getName() + " is out of date: "
+                        + entry.declaringClassName + "." + entry.methodName + " is not found", e);
+            }
+        }
+        Collections.sort(converters, CONVERTER_ORDER);
+        return new JsonVersionConverters(ImmutableList.copyOf(converters), modelVersion);
+    }
+
+    private static void addConverter(List<Converter> converters, Method method, VersionRange range) {
+        checkArgument(Modifier.isStatic(method.getModifiers()),
+                "Version converter must be static: %s", method);
+        if (method.getParameterTypes().length == 0) {
+            checkArgument(JsonVersionMigration.class.isAssignableFrom(method.getReturnType()),
+                    "Version converter without parameters must return JsonVersionMigration: %s", method);
+            converters.add(new Converter(method, range, invokeMigration(method)));
+            return;
+        }
+        checkArgument(method.getParameterTypes().length == 1
+                        && method.getParameterTypes()[0].isAssignableFrom(ObjectNode.class),
+                "Version converter must take a single ObjectNode: %s", method);
+        checkArgument(method.getReturnType() == void.class
+                        || ObjectNode.class.isAssignableFrom(method.getReturnType()),
+                "Version converter must return void or ObjectNode: %s", method);
+        converters.add(new Converter(method, range, null));
+    }
+
+    private static JsonVersionMigration invokeMigration(Method method) {
+        method.setAccessible(true);
+        try {
+            return checkNotNull((JsonVersionMigration) method.invoke(null), "Version converter returned null: %s", method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Version converter is not accessible: " + method, e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalArgumentException("Version converter failed: " + method, e.getCause());
+        }
+    }
+
+    boolean isEmpty() {
+        return converters.isEmpty();
+    }
+
+    /**
+     * @return the versions the converters are invoked for
+     */
+    List<VersionRange> getRanges() {
+        List<VersionRange> ranges = Lists.newArrayListWithCapacity(converters.size());
+        for (Converter converter : converters)
+            ranges.add(converter.range);
+        return ranges;
+    }
+
+    /**
+     * @return the converters that upgrade the json version to the model version, in the order they are run
+     */
+    ConversionPlan planFor(Version jsonVersion) {
+        final int interval = versionIntervals.indexOf(jsonVersion);
+        ConversionPlan plan = plansByInterval.get(interval);
+        if (plan == null) {
+            // Racing threads compute the same plan, so it does not matter whose copy is kept
+            plansByInterval.compareAndSet(interval, null, buildPlan(versionIntervals.lowerBound(interval)));
+            plan = plansByInterval.get(interval);
+        }
+        return plan;
+    }
+
+    /**
+     * @return the number of version intervals whose plans are built
+     */
+    int builtPlanCount() {
+        int count = 0;
+        for (int i = 0; i < plansByInterval.length(); i++) {
+            if (plansByInterval.get(i) != null)
+                count++;
+        }
+        return count;
+    }
+
+    private ConversionPlan buildPlan(Version fromVersion) {
+        ImmutableList.Builder<Converter> steps = ImmutableList.builder();
+        Version version = fromVersion;
+        for (Converter converter : converters) {
+            Version untilVersion = converter.range.getUntilVersion();
+            if (!converter.range.contains(version)
+                    || (untilVersion != null && untilVersion.compareTo(modelVersion) > 0))
+                continue;
+            steps.add(converter);
+            // The json is in the until version of the converter from now on
+            if (untilVersion != null && untilVersion.compareTo(version) > 0)
+                version = untilVersion;
+        }
+        return new ConversionPlan(steps.build());
+    }
+
+    /**
+     * The converters to run for the json of a version interval
+     */
+    static final class ConversionPlan {
+        private final List<Converter> steps;
+        // The token-stream migrations of the steps, composed into one
+        private final JsonVersionMigration migration;
+        // Whether all steps are token-stream migrations
+        private final boolean streaming;
+
+        private ConversionPlan(List<Converter> steps) {
+            this.steps = steps;
+            JsonVersionMigration composed = JsonVersionMigration.IDENTITY;
+            boolean allMigrations = true;
+            for (Converter step : steps) {
+                if (step.migration != null)
+                    composed = composed.andThen(step.migration);
+                else
+                    allMigrations = false;
+            }
+            this.migration = composed;
+            this.streaming = allMigrations;
+        }
+
+        boolean isEmpty() {
+            return steps.isEmpty();
+        }
+
+        /**
+         * @return whether the plan can be applied to the token stream with {@link #getMigration()}
+         */
+        boolean isStreaming() {
+            return streaming;
+        }
+
+        /**
+         * @return the token-stream migrations of the plan; the ObjectNode converters are not included
+         */
+        JsonVersionMigration getMigration() {
+            return migration;
+        }
+
+        ObjectNode convert(ObjectNode node, JsonParser jsonParser) throws IOException {
+            for (Converter step : steps)
+                node = step.convert(node, jsonParser);
+            return node;
+        }
+    }
+
+    private static final class Converter {
+        private static final MethodType CONVERTER_TYPE = MethodType.methodType(Object.class, ObjectNode.class);
+
+        private final Method method;
+        // Bound once, so that converting does no access checks or argument boxing; null for a migration. The handle is
+        // read from a field, so the JIT cannot treat it as a constant and inline the converter through it: this only
+        // removes the overhead of reflection, and a call still goes through the handle. Making the call site constant
+        // would take a class generated per converter, which the Java 7 target rules out.
+        private final MethodHandle handle;
+        private final VersionRange range;
+        // The token-stream migration the method declares, or null
+        private final JsonVersionMigration migration;
+
+        private Converter(Method method, VersionRange range, JsonVersionMigration migration) {
+            this.method = method;
+            this.range = range;
+            this.migration = migration;
+            if (migration != null) {
+                this.handle = null;
+                return;
+            }
+            method.setAccessible(true);
+            try {
+                this.handle = MethodHandles.lookup().unreflect(method).asType(CONVERTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Version converter is not accessible: " + method, e);
+            }
+        }
+
+        private ObjectNode convert(ObjectNode node, JsonParser jsonParser) throws IOException {
+            if (migration != null)
+                return migration.apply(node);
+            Object result;
+            try {
+                result = (Object) handle.invokeExact(node);
+            } catch (IOException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw JsonMappingException.from(jsonParser, "Version converter " + method + " failed", e);
+            }
+            return result != null ? (ObjectNode) result : node;
+        }
+    }
+}
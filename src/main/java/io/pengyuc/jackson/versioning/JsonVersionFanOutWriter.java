@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Writes a value in several json versions in one pass. The value is traversed once: each property of a versioned
+ * bean is read once, and its serializer run once, for all the versions that have it. Objects and arrays that are the
+ * same in several versions, like nested beans that are not versioned, are encoded once and copied to the json of
+ * each of these versions; other values are encoded for each version. Values are copied when writing json without a
+ * pretty printer.
+ * Each output is the json the writer would write with the version configured as
+ * {@link Version#JsonVersionConfigSerializing}; json version properties that are set still take precedence.
+ * <pre>
+ * JsonVersionFanOutWriter fanOut = JsonVersionFanOutWriter.forVersions(mapper.writer(), "0.8", "0.9", "1.0");
+ * List&lt;String&gt; jsons = fanOut.writeValuesAsStrings(event);
+ * </pre>
+ */
+public final class JsonVersionFanOutWriter {
+    private final ObjectWriter writer;
+    private final ImmutableList<Version> versions;
+
+    private JsonVersionFanOutWriter(ObjectWriter writer, List<Version> versions) {
+        checkArgument(!versions.isEmpty(), "No version to write");
+        checkArgument(versions.size() <= FanOutGenerator.MAX_TARGETS,
+                "At most %s versions can be written at once", FanOutGenerator.MAX_TARGETS);
+        this.writer = checkNotNull(writer);
+        this.versions = ImmutableList.copyOf(versions);
+    }
+
+    public static JsonVersionFanOutWriter forVersions(ObjectWriter writer, Version... versions) {
+        return new JsonVersionFanOutWriter(writer, Arrays.asList(versions));
+    }
+
+    public static JsonVersionFanOutWriter forVersions(ObjectWriter writer, String... versions) {
+        List<Version> parsedVersions = Lists.newArrayListWithCapacity(versions.length);
+        for (String version : versions)
+            parsedVersions.add(Version.fromString(version));
+        return new JsonVersionFanOutWriter(writer, parsedVersions);
+    }
+
+    public List<Version> getVersions() {
+        return versions;
+    }
+
+    /**
+     * @return the json of the value in each of the versions, in the order of the versions
+     */
+    public List<String> writeValuesAsStrings(Object value) throws JsonProcessingException {
+        final JsonFactory factory = writer.getFactory();
+        final List<StringWriter> outputs = Lists.newArrayListWithCapacity(versions.size());
+        final List<JsonGenerator> generators = Lists.newArrayListWithCapacity(versions.size());
+        try {
+            for (int i = 0; i < versions.size(); i++) {
+                StringWriter output = new StringWriter();
+                outputs.add(output);
+                generators.add(factory.createGenerator(output));
+            }
+            writeAndClose(value, generators);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw JsonMappingException.fromUnexpectedIOE(e);
+        }
+
+        List<String> jsons = Lists.newArrayListWithCapacity(outputs.size());
+        for (StringWriter output : outputs)
+            jsons.add(output.toString());
+        return jsons;
+    }
+
+    /**
+     * @return the json of the value in each of the versions, encoded in UTF-8, in the order of the versions
+     */
+    public List<byte[]> writeValuesAsBytes(Object value) throws JsonProcessingException {
+        final JsonFactory factory = writer.getFactory();
+        final List<ByteArrayOutputStream> outputs = Lists.newArrayListWithCapacity(versions.size());
+        final List<JsonGenerator> generators = Lists.newArrayListWithCapacity(versions.size());
+        try {
+            for (int i = 0; i < versions.size(); i++) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                outputs.add(output);
+                generators.add(factory.createGenerator(output, JsonEncoding.UTF8));
+            }
+            writeAndClose(value, generators);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw JsonMappingException.fromUnexpectedIOE(e);
+        }
+
+        List<byte[]> jsons = Lists.newArrayListWithCapacity(outputs.size());
+        for (ByteArrayOutputStream output : outputs)
+            jsons.add(output.toByteArray());
+        return jsons;
+    }
+
+    /**
+     * Writes the value to the generators, one for each of the versions in the same order. The generators are
+     * configured by the writer but not closed.
+     */
+    public void writeValues(Object value, List<? extends JsonGenerator> generators) throws IOException {
+        writer.writeValue(new FanOutGenerator(generators, versions, writer.getFactory()), value);
+    }
+
+    private void writeAndClose(Object value, List<JsonGenerator> generators) throws IOException {
+        FanOutGenerator generator = new FanOutGenerator(generators, versions, writer.getFactory());
+        try {
+            writer.writeValue(generator, value);
+        } finally {
+            generator.close();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A migration of the top level fields of a json object: renames, drops, constant insertions and value transforms.
+ * Unlike a converter that takes an ObjectNode, a migration is applied to the tokens while they are streamed into the
+ * bean deserializer, so the object is never read into a tree; only the values of transformed fields are.
+ * Serializing applies the renames in reverse and leaves the inserted fields out.
+ *
+ * A {@link io.pengyuc.jackson.versioning.annotations.JsonVersionConverter} method without parameters that returns
+ * a migration declares a token-stream converter. The method is invoked once, when the model is introspected.
+ * <pre>
+ * &#64;JsonVersionConverter
+ * &#64;JsonUntil("0.5")
+ * static JsonVersionMigration renameTitle() {
+ *     return JsonVersionMigration.builder().rename("title", "name").build();
+ * }
+ * </pre>
+ */
+public final class JsonVersionMigration {
+    /** A migration that changes nothing */
+    public static final JsonVersionMigration IDENTITY = builder().build();
+
+    /**
+     * Transforms the value of a field. Only the value of the field is read into a tree.
+     */
+    public interface ValueTransform {
+        JsonNode transform(JsonNode value);
+    }
+
+    // What happens to each field with a name that is migrated, by its name in the json
+    private final Map<String, FieldAction> actions;
+    // The fields appended to the object, by name
+    private final Map<String, JsonNode> inserts;
+    private final ObjectNode insertsNode;
+
+    private JsonVersionMigration(Map<String, FieldAction> actions, Map<String, JsonNode> inserts) {
+        this.actions = ImmutableMap.copyOf(actions);
+        this.inserts = ImmutableMap.copyOf(inserts);
+        this.insertsNode = JsonNodeFactory.instance.objectNode();
+        for (Map.Entry<String, JsonNode> insert : inserts.entrySet())
+            insertsNode.set(insert.getKey(), insert.getValue());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isIdentity() {
+        return actions.isEmpty() && inserts.isEmpty();
+    }
+
+    /**
+     * @return the migration that applies this migration, then the next one
+     */
+    public JsonVersionMigration andThen(JsonVersionMigration next) {
+        Set<String> names = new LinkedHashSet<String>(actions.keySet());
+        names.addAll(next.actions.keySet());
+        Map<String, FieldAction> composedActions = Maps.newLinkedHashMap();
+        for (String name : names) {
+            FieldAction action = actionFor(name).andThen(next);
+            if (!action.isIdentity(name))
+                composedActions.put(name, action);
+        }
+
+        Map<String, JsonNode> composedInserts = Maps.newLinkedHashMap();
+        for (Map.Entry<String, JsonNode> insert : inserts.entrySet()) {
+            FieldAction action = next.actionFor(insert.getKey());
+            if (!action.isDrop())
+                composedInserts.put(action.targetName, action.transform(insert.getValue()));
+        }
+        composedInserts.putAll(next.inserts);
+        return new JsonVersionMigration(composedActions, composedInserts);
+    }
+
+    /**
+     * Applies the migration to an object node
+     *
+     * @return the migrated node; the given node is not changed
+     */
+    public ObjectNode apply(ObjectNode node) {
+        ObjectNode migrated = node.objectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            FieldAction action = actionFor(field.getKey());
+            if (!action.isDrop())
+                migrated.set(action.targetName, action.transform(field.getValue()));
+        }
+        migrated.setAll(insertsNode);
+        return migrated;
+    }
+
+    /**
+     * @return the name a property of the migrated json had before the migration, or null if it was not in the json
+     * before the migration
+     */
+    String originalName(String migratedName) {
+        if (inserts.containsKey(migratedName))
+            return null;
+        for (Map.Entry<String, FieldAction> action : actions.entrySet()) {
+            if (migratedName.equals(action.getValue().targetName))
+                return action.getKey();
+        }
+        // The json field of the same name, if any, is dropped or renamed to another property
+        return actions.containsKey(migratedName) ? null : migratedName;
+    }
+
+    /**
+     * @return what happens to the field, or null if the field is kept as is
+     */
+    FieldAction findAction(String name) {
+        return actions.get(name);
+    }
+
+    boolean hasInserts() {
+        return !inserts.isEmpty();
+    }
+
+    /**
+     * @return the inserted fields as an object; must not be changed
+     */
+    ObjectNode getInsertsNode() {
+        return insertsNode;
+    }
+
+    private FieldAction actionFor(String name) {
+        FieldAction action = actions.get(name);
+        return action != null ? action : new FieldAction(name, null);
+    }
+
+    @Override
+    public String toString() {
+        return "JsonVersionMigration" + actions + ", inserts " + inserts.keySet();
+    }
+
+    /**
+     * What happens to a field: dropped if the target name is null, otherwise renamed to the target name (which can be
+     * the same name) and its value transformed if there is a transform.
+     */
+    static final class FieldAction {
+        private final String targetName;
+        private final ValueTransform transform;
+
+        private FieldAction(String targetName, ValueTransform transform) {
+            this.targetName = targetName;
+            this.transform = transform;
+        }
+
+        boolean isDrop() {
+            return targetName == null;
+        }
+
+        String getTargetName() {
+            return targetName;
+        }
+
+        ValueTransform getTransform() {
+            return transform;
+        }
+
+        JsonNode transform(JsonNode value) {
+            return transform == null ? value : transform.transform(value);
+        }
+
+        private boolean isIdentity(String name) {
+            return name.equals(targetName) && transform == null;
+        }
+
+        private FieldAction andThen(JsonVersionMigration next) {
+            if (isDrop())
+                return this;
+            final FieldAction nextAction = next.actionFor(targetName);
+            if (nextAction.isDrop() || transform == null)
+                return nextAction;
+            if (nextAction.transform == null)
+                return new FieldAction(nextAction.targetName, transform);
+            final ValueTransform first = transform;
+            return new FieldAction(nextAction.targetName, new ValueTransform() {
+                @Override
+                public JsonNode transform(JsonNode value) {
+                    return nextAction.transform.transform(first.transform(value));
+                }
+            });
+        }
+    }
+
+    public static final class Builder {
+        private final Map<String, FieldAction> actions = Maps.newLinkedHashMap();
+        private final Map<String, JsonNode> inserts = Maps.newLinkedHashMap();
+
+        private Builder() {
+        }
+
+        public Builder rename(String from, String to) {
+            FieldAction action = actions.get(checkNotNull(from));
+            actions.put(from, new FieldAction(checkNotNull(to), action == null ? null : action.transform));
+            return this;
+        }
+
+        public Builder drop(String name) {
+            actions.put(checkNotNull(name), new FieldAction(null, null));
+            return this;
+        }
+
+        public Builder insert(String name, JsonNode value) {
+            inserts.put(checkNotNull(name), checkNotNull(value));
+            return this;
+        }
+
+        public Builder insert(String name, String value) {
+            return insert(name, JsonNodeFactory.instance.textNode(value));
+        }
+
+        public Builder insert(String name, long value) {
+            return insert(name, JsonNodeFactory.instance.numberNode(value));
+        }
+
+        public Builder insert(String name, boolean value) {
+            return insert(name, JsonNodeFactory.instance.booleanNode(value));
+        }
+
+        /**
+         * Transforms the value of the field, which keeps its name unless it is also renamed
+         */
+        public Builder transform(String name, ValueTransform transform) {
+            FieldAction action = actions.get(checkNotNull(name));
+            checkArgument(action == null || !action.isDrop(), "Field %s is dropped", name);
+            actions.put(name, new FieldAction(action == null ? name : action.targetName, checkNotNull(transform)));
+            return this;
+        }
+
+        public JsonVersionMigration build() {
+            return new JsonVersionMigration(actions, inserts);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Outcome of reading a versioned value with {@link JsonVersionResultReader}: either the value, or the
+ * {@link JsonVersioningException} that rejected it.
+ */
+public final class JsonVersionResult<T> {
+    private final T value;
+    private final JsonVersioningException rejection;
+
+    private JsonVersionResult(T value, JsonVersioningException rejection) {
+        this.value = value;
+        this.rejection = rejection;
+    }
+
+    static <T> JsonVersionResult<T> of(T value) {
+        return new JsonVersionResult<T>(value, null);
+    }
+
+    static <T> JsonVersionResult<T> rejected(JsonVersioningException rejection) {
+        return new JsonVersionResult<T>(null, checkNotNull(rejection));
+    }
+
+    public boolean isRejected() {
+        return rejection != null;
+    }
+
+    /**
+     * @return the value read
+     * @throws IllegalStateException if the value was rejected
+     */
+    public T getValue() {
+        if (rejection != null)
+            throw new IllegalStateException("The value was rejected: " + rejection.getOriginalMessage(), rejection);
+        return value;
+    }
+
+    /**
+     * @return the rejection, or null if the value was read
+     */
+    public JsonVersioningException getRejection() {
+        return rejection;
+    }
+
+    @Override
+    public String toString() {
+        return rejection != null ? "Rejected[" + rejection.getOriginalMessage() + "]" : "Value[" + value + "]";
+    }
+}
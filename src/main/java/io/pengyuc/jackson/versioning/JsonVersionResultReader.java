@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Reads versioned values, returning the versioning rejections as results rather than throwing them, so that a gateway
+ * can shed requests with bad json versions or properties cheaply. The rejections do not capture their stack traces,
+ * unless the reader sets {@link Version#JsonVersionConfigRejectionStackTraces}; other failures, such as malformed
+ * json, are still thrown.
+ * <pre>
+ * JsonVersionResult&lt;Car&gt; result = JsonVersionResultReader.forType(mapper.reader(), Car.class).readValue(body);
+ * if (result.isRejected())
+ *     return badRequest(result.getRejection().getMessage());
+ * </pre>
+ */
+public final class JsonVersionResultReader<T> {
+    private final ObjectReader reader;
+
+    private JsonVersionResultReader(ObjectReader reader) {
+        this.reader = reader;
+    }
+
+    public static <T> JsonVersionResultReader<T> forType(ObjectReader reader, Class<T> type) {
+        ObjectReader typedReader = reader.forType(type);
+        if (typedReader.getAttributes().getAttribute(Version.JsonVersionConfigRejectionStackTraces) == null)
+            typedReader = typedReader.withAttribute(Version.JsonVersionConfigRejectionStackTraces, Boolean.FALSE);
+        return new JsonVersionResultReader<T>(typedReader);
+    }
+
+    public JsonVersionResult<T> readValue(String src) throws IOException {
+        try {
+            return JsonVersionResult.of(reader.<T>readValue(src));
+        } catch (JsonMappingException e) {
+            return rejected(e);
+        }
+    }
+
+    public JsonVersionResult<T> readValue(byte[] src) throws IOException {
+        return readValue(src, 0, src.length);
+    }
+
+    public JsonVersionResult<T> readValue(byte[] src, int offset, int length) throws IOException {
+        try {
+            return JsonVersionResult.of(reader.<T>readValue(src, offset, length));
+        } catch (JsonMappingException e) {
+            return rejected(e);
+        }
+    }
+
+    public JsonVersionResult<T> readValue(InputStream src) throws IOException {
+        try {
+            return JsonVersionResult.of(reader.<T>readValue(src));
+        } catch (JsonMappingException e) {
+            return rejected(e);
+        }
+    }
+
+    public JsonVersionResult<T> readValue(Reader src) throws IOException {
+        try {
+            return JsonVersionResult.of(reader.<T>readValue(src));
+        } catch (JsonMappingException e) {
+            return rejected(e);
+        }
+    }
+
+    public JsonVersionResult<T> readValue(JsonNode src) throws IOException {
+        try {
+            return JsonVersionResult.of(reader.<T>readValue(src));
+        } catch (JsonMappingException e) {
+            return rejected(e);
+        }
+    }
+
+    /**
+     * @return the result of the value the parser is on, leaving the parser open
+     */
+    public JsonVersionResult<T> readValue(JsonParser src) throws IOException {
+        try {
+            return JsonVersionResult.of(reader.<T>readValue(src));
+        } catch (JsonMappingException e) {
+            return rejected(e);
+        }
+    }
+
+    /**
+     * @return the result of the versioning rejection, found in the causes of wrapping exceptions as well
+     * @throws JsonMappingException if it is not a versioning rejection
+     */
+    private static <T> JsonVersionResult<T> rejected(JsonMappingException e) throws JsonMappingException {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonVersioningException)
+                return JsonVersionResult.rejected((JsonVersioningException) cause);
+        }
+        throw e;
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads a stream of versioned objects one at a time, either the elements of a json array or a sequence of root
+ * level objects such as newline-delimited json. Only the object being read is held in memory, and only the fields in
+ * front of its json version property are buffered.
+ * <p>
+ * Without a stream version, each object is read in the version of its json version property, or the configured
+ * version, as {@link ObjectReader#readValues} would; the deserializers and conversion plans of the versions read are
+ * kept between objects. With a stream version, all the objects are read in that version: the version is resolved
+ * once for the whole stream, the objects are streamed straight into the deserializer of the version without looking
+ * for their json version properties, and the version is set on each bean.
+ * <pre>
+ * MappingIterator&lt;Event&gt; events = JsonVersionStreamReader.forType(mapper.reader(), Event.class)
+ *         .withVersion("0.9")
+ *         .readValues(inputStream);
+ * while (events.hasNextValue())
+ *     handle(events.nextValue());
+ * </pre>
+ */
+public final class JsonVersionStreamReader<T> {
+    private final ObjectReader reader;
+    private final Version streamVersion;
+
+    private JsonVersionStreamReader(ObjectReader reader, Version streamVersion) {
+        this.reader = reader;
+        this.streamVersion = streamVersion;
+    }
+
+    public static <T> JsonVersionStreamReader<T> forType(ObjectReader reader, Class<T> type) {
+        return new JsonVersionStreamReader<T>(reader.forType(type), null);
+    }
+
+    /**
+     * @return a reader of streams whose objects are all in the version
+     */
+    public JsonVersionStreamReader<T> withVersion(Version streamVersion) {
+        checkNotNull(streamVersion);
+        // Nested versioned beans without a json version property are read in the stream version as well
+        return new JsonVersionStreamReader<T>(
+                new StreamVersionReader(reader.withAttribute(Version.JsonVersionConfigDeserializing, streamVersion),
+                        streamVersion),
+                streamVersion);
+    }
+
+    public JsonVersionStreamReader<T> withVersion(String streamVersion) {
+        return withVersion(Version.fromString(streamVersion));
+    }
+
+    /**
+     * @return the version of all the objects of the streams, or null if each object is read in its own version
+     */
+    public Version getVersion() {
+        return streamVersion;
+    }
+
+    public MappingIterator<T> readValues(InputStream src) throws IOException {
+        return reader.readValues(src);
+    }
+
+    public MappingIterator<T> readValues(Reader src) throws IOException {
+        return reader.readValues(src);
+    }
+
+    public MappingIterator<T> readValues(File src) throws IOException {
+        return reader.readValues(src);
+    }
+
+    public MappingIterator<T> readValues(byte[] src) throws IOException {
+        return reader.readValues(src, 0, src.length);
+    }
+
+    public MappingIterator<T> readValues(String src) throws IOException {
+        return reader.readValues(src);
+    }
+
+    /**
+     * @return the objects read from the parser, which is left open
+     */
+    public MappingIterator<T> readValues(JsonParser src) throws IOException {
+        return reader.readValues(src);
+    }
+
+    /**
+     * Object reader that hands the iterators it creates the deserializer of the stream version
+     */
+    private static final class StreamVersionReader extends ObjectReader {
+        private static final long serialVersionUID = 1L;
+
+        private final Version streamVersion;
+
+        StreamVersionReader(ObjectReader base, Version streamVersion) {
+            super(base, base.getConfig());
+            this.streamVersion = streamVersion;
+        }
+
+        @Override
+        protected <V> MappingIterator<V> _newIterator(JsonParser p, DeserializationContext ctxt,
+                                                      JsonDeserializer<?> deser, boolean parserManaged) {
+            if (deser instanceof JsonVersioningDeserializer)
+                deser = ((JsonVersioningDeserializer) deser).inVersion(streamVersion);
+            return super._newIterator(p, ctxt, deser, parserManaged);
+        }
+    }
+}
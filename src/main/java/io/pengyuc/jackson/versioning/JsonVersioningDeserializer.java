@@ -25,40 +25,92 @@
 
 package io.pengyuc.jackson.versioning;
 
+import com.fasterxml.jackson.core.JsonLocation;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
 import com.fasterxml.jackson.databind.BeanDescription;
 import com.fasterxml.jackson.databind.DeserializationConfig;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.deser.BeanDeserializer;
+import com.fasterxml.jackson.databind.deser.SettableBeanProperty;
+import com.fasterxml.jackson.databind.deser.impl.BeanPropertyMap;
 import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TreeTraversingParser;
-import com.google.common.base.Optional;
-import com.google.common.base.Predicate;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.google.common.base.Predicates;
-import com.google.common.base.Strings;
-import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import io.pengyuc.jackson.versioning.annotations.JsonVersionProperty;
 import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- *
+ * Bean deserializer that checks the json version and rejects properties that are not in that version.
+ * The json is streamed into the wrapped bean deserializer; only the fields in front of the version property
+ * (if the model has one) are buffered until the version is known. Nothing is buffered when the version property
+ * is the first field of the json, or when the json is read from a tree built by a versioning deserializer, ex: for
+ * the converters of an outer bean, which already holds the whole object.
+ * Once the version is known, the bean is bound by a bean deserializer built for that version, whose property map
+ * leaves out the properties not in the version; beans with creator properties, any setters, unwrapped or external
+ * type id properties, and json versions with converters, are bound by the wrapped deserializer instead, with the
+ * field names checked against the version as they are streamed.
  */
 public class JsonVersioningDeserializer extends BeanDeserializer {
+    private static final int MAX_CACHED_VERSIONS = 64;
+
     private final  DeserializationConfig config;
     private final  BeanDescription beanDesc;
     private final  BeanDeserializer deserializer;
 
     private final Version modelVersion;
     private final BeanPropertyDefinition jsonVersionProperty;
+    // Settable json version property for the version-first fast path, or null if it has to be buffered
+    private final SettableBeanProperty versionSetter;
+    private final boolean versionSetterTakesVersion;
+    // Versions in which each property with versioning annotations is present, by property name
+    private final Map<String, VersionRange> propertyRanges;
+    private final VersionIntervals versionIntervals;
+    // The properties that are not in each version interval, built when the interval is first deserialized
+    private final AtomicReferenceArray<Map<String, VersionRange>> propertiesNotInVersionByInterval;
+    private final JsonVersionConverters converters;
+    // The property maps of each version interval, and the bean deserializers of the json versions deserialized so far
+    // by version string; both are built from this deserializer once it is resolved
+    private final AtomicReferenceArray<BeanPropertyMap> propertyMapsByInterval;
+    private final ConcurrentMap<String, VersionSpecificDeserializer> deserializersByVersion;
+    private volatile VersionSpecificDeserializer lastVersionDeserializer;
+    private final JsonVersioningListener listener;
+    // Whether properties not in their version are skipped, unless the reader says otherwise
+    private final boolean lenientByDefault;
+    // Whether the rejections capture their stack traces, unless the reader says otherwise
+    private final boolean rejectionStackTraces;
 
     public JsonVersioningDeserializer(
             JsonVersioned jsonVersionedAnnotation,
             DeserializationConfig config,
             BeanDescription beanDesc,
             BeanDeserializer deserializer) {
+        this(jsonVersionedAnnotation, config, beanDesc, deserializer, null, JsonVersioningListener.NO_OP, false,
+                true);
+    }
+
+    /**
+     * @param versionTable the build-time version table of the model, or null to look up its annotations
+     * @param listener told of the deserialized objects and of the rejected ones
+     * @param lenientByDefault whether properties not in their version are skipped rather than rejected
+     * @param rejectionStackTraces whether the rejections capture their stack traces
+     */
+    JsonVersioningDeserializer(JsonVersioned jsonVersionedAnnotation, DeserializationConfig config,
+                               BeanDescription beanDesc, BeanDeserializer deserializer, VersionTable versionTable,
+                               JsonVersioningListener listener, boolean lenientByDefault,
+                               boolean rejectionStackTraces) {
         super(deserializer);
         this.config = config;
         this.beanDesc = beanDesc;
@@ -67,8 +119,9 @@ public class JsonVersioningDeserializer extends BeanDeserializer {
         modelVersion = Version.fromString(jsonVersionedAnnotation.value());
         BeanPropertyDefinition versionProperty = null;
         for (BeanPropertyDefinition propertyDef: beanDesc.findProperties()) {
-            if ((propertyDef.hasGetter() && propertyDef.getGetter().hasAnnotation(JsonVersionProperty.class))
-                    || (propertyDef.hasField() && propertyDef.getField().hasAnnotation(JsonVersionProperty.class))) {
+            if (versionTable != null ? versionTable.isVersionProperty(propertyDef)
+                    : ((propertyDef.hasGetter() && propertyDef.getGetter().hasAnnotation(JsonVersionProperty.class))
+                    || (propertyDef.hasField() && propertyDef.getField().hasAnnotation(JsonVersionProperty.class)))) {
                 // Only support one attribute with JsonVersionProperty annotation
                 versionProperty = propertyDef;
                 break;
@@ -76,58 +129,430 @@ public class JsonVersioningDeserializer extends BeanDeserializer {
         }
         jsonVersionProperty = versionProperty;
 
+        SettableBeanProperty setter = null;
+        if (jsonVersionProperty != null && !deserializer.getValueInstantiator().canCreateFromObjectWith()) {
+            // The version can only be set after binding if it is not a creator property
+            setter = deserializer.findProperty(jsonVersionProperty.getName());
+            if (setter != null && !setter.getType().hasRawClass(String.class)
+                    && !setter.getType().hasRawClass(Version.class))
+                setter = null;
+        }
+        versionSetter = setter;
+        versionSetterTakesVersion = setter != null && setter.getType().hasRawClass(Version.class);
+
+        ImmutableMap.Builder<String, VersionRange> ranges = ImmutableMap.builder();
+        for (BeanPropertyDefinition propertyDef: beanDesc.findProperties()) {
+            VersionRange range = versionTable != null
+                    ? versionTable.rangeOf(propertyDef, false) : VersionRange.forPropertyDef(propertyDef);
+            if (range != VersionRange.ALL)
+                ranges.put(propertyDef.getName(), range);
+        }
+        propertyRanges = ranges.build();
+        versionIntervals = VersionIntervals.of(propertyRanges.values());
+        propertiesNotInVersionByInterval = new AtomicReferenceArray<Map<String, VersionRange>>(versionIntervals.size());
+        converters = JsonVersionConverters.forType(beanDesc.getBeanClass(), modelVersion, versionTable);
+        propertyMapsByInterval = new AtomicReferenceArray<BeanPropertyMap>(versionIntervals.size());
+        deserializersByVersion = Maps.newConcurrentMap();
+        this.listener = listener;
+        this.lenientByDefault = lenientByDefault;
+        this.rejectionStackTraces = rejectionStackTraces;
     }
 
     @Override
     public Object deserialize(JsonParser jsonParser, DeserializationContext ctx) throws IOException {
-        final ObjectNode jsonNode = jsonParser.readValueAsTree();
-        Version jsonVersion = modelVersion;
-        try {
-            if (jsonVersionProperty != null && jsonNode.has(jsonVersionProperty.getName())) {
-                    jsonVersion = Version.fromString(jsonNode.get(jsonVersionProperty.getName()).asText());
-            } else {
-                Object jsonVersionObj = ctx.getAttribute(Version.JsonVersionConfigDeserializing);
-                if (jsonVersionObj != null) {
-                    if (jsonVersionObj instanceof Version)
-                        jsonVersion = (Version) jsonVersionObj;
-                    else
-                        jsonVersion = Version.fromString(jsonVersionObj.toString());
-                }
-            }
-        } catch (IllegalArgumentException e) {
-            throw ctx.mappingException("Failed to parse version string: %s", e.getMessage(), e);
+        JsonToken token = jsonParser.getCurrentToken();
+        if (token != JsonToken.START_OBJECT && token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+            // Not a JSON object; nothing to check against the version
+            return deserializer.deserialize(jsonParser, ctx);
         }
+        // Nothing is timed or measured unless the listener is enabled
+        final boolean timed = listener.isEnabled();
+        final long start = timed ? System.nanoTime() : 0L;
+        final long startOffset = timed ? offsetOf(jsonParser.getTokenLocation()) : -1L;
 
-        if (modelVersion.compareTo(jsonVersion) < 0) {
-            throw ctx.mappingException(
-                    "JSON version (%s) is greater than the latest model version (%s)",
-                    jsonVersion.toString(), modelVersion.toString());
+        if (jsonVersionProperty == null) {
+            // The version can only come from the context, so stream straight into the bean deserializer
+            Version jsonVersion = resolveConfiguredVersion(ctx);
+            checkModelVersion(jsonVersion, ctx);
+            return bind(jsonParser, jsonVersion, timed, startOffset, ctx);
         }
 
-        Optional<BeanPropertyDefinition> propertyNotInVersion = FluentIterable.from(beanDesc.findProperties())
-                // Find the properties that should not be in this version of json
-                .filter(Predicates.not(JsonVersioningPredicate.forPropertyDefInVersion(jsonVersion)))
-                // see if any of those invalid property names is in the json
-                .firstMatch(new Predicate<BeanPropertyDefinition>() {
-                    @Override
-                    public boolean apply(BeanPropertyDefinition beanPropertyDefinition) {
-                        return jsonNode.has(beanPropertyDefinition.getName());
-                    }
-                });
+        final String versionPropertyName = jsonVersionProperty.getName();
+        if (token == JsonToken.START_OBJECT) {
+            // A tree-backed parser already holds the whole object, so the version can be looked up in place
+            JsonNode node = currentTreeNode(jsonParser);
+            if (node != null && node.isObject() && (versionSetter != null || node.has(versionPropertyName)))
+                return deserializeFromTree(jsonParser, node.get(versionPropertyName), timed, ctx);
+            token = jsonParser.nextToken();
+        }
+        if (versionSetter != null && token == JsonToken.FIELD_NAME
+                && versionPropertyName.equals(jsonParser.getCurrentName())) {
+            return deserializeVersionFirst(jsonParser, timed, startOffset, ctx);
+        }
 
-        if (propertyNotInVersion.isPresent()) {
-            throw ctx.mappingException("Property \"%s\" is not in version %s",
-                    propertyNotInVersion.get().getName(), jsonVersion.toString());
+        // Buffer the fields that come before the version property, until the json version is known
+        final TokenBuffer buffer = new TokenBuffer(jsonParser, ctx);
+        buffer.writeStartObject();
+        for (; token == JsonToken.FIELD_NAME; token = jsonParser.nextToken()) {
+            if (jsonParser.getCurrentName().equals(versionPropertyName))
+                break;
+            buffer.copyCurrentStructure(jsonParser);
         }
 
-        // If there is no json version in the json body, insert the version to the json version property (if exists)
-        if (jsonVersionProperty != null &&
-                Strings.isNullOrEmpty(jsonNode.findPath(jsonVersionProperty.getName()).asText()))
-            jsonNode.put(jsonVersionProperty.getName(), jsonVersion.toString());
+        final Version jsonVersion;
+        final JsonParser postInterceptionParser;
+        if (token == JsonToken.FIELD_NAME) {
+            // Found the version property; the rest of the object is streamed after the buffered fields
+            jsonParser.nextToken();
+            jsonVersion = readVersion(jsonParser, ctx);
+            buffer.writeFieldName(versionPropertyName);
+            buffer.copyCurrentStructure(jsonParser);
+            checkModelVersion(jsonVersion, ctx);
+            postInterceptionParser = JsonParserSequence.createFlattened(false, buffer.asParser(jsonParser), jsonParser);
+        } else {
+            // No version in the json body; the whole object is buffered and the resolved version is inserted
+            jsonVersion = resolveConfiguredVersion(ctx);
+            checkModelVersion(jsonVersion, ctx);
+            buffer.writeFieldName(versionPropertyName);
+            buffer.writeString(jsonVersion.toString());
+            buffer.writeEndObject();
+            postInterceptionParser = buffer.asParser(jsonParser);
+        }
 
-        JsonParser postInterceptionParser = new TreeTraversingParser(jsonNode, jsonParser.getCodec());
+        if (timed) {
+            listener.onStage(handledType(), jsonVersion, JsonVersioningListener.Stage.BUFFER,
+                    System.nanoTime() - start, sizeSince(startOffset, jsonParser));
+        }
         postInterceptionParser.nextToken();
-        return deserializer.deserialize(postInterceptionParser, ctx);
+        return bind(postInterceptionParser, jsonVersion, timed, startOffset, ctx);
+    }
+
+    /**
+     * Binds the object the parser is on, positioned at its START_OBJECT, one of its FIELD_NAMEs or its END_OBJECT.
+     * Without converters for the json version, the bean deserializer of the version binds it and rejects the
+     * properties that are not in the version. Otherwise the field names are checked against the version as they are
+     * streamed, and the converters are applied to the token stream when they are all token-stream migrations, or
+     * else to a tree of the object.
+     */
+    private Object bind(JsonParser jsonParser, Version jsonVersion, boolean timed, long startOffset,
+                        DeserializationContext ctx) throws IOException {
+        JsonVersionConverters.ConversionPlan plan = findPlan(jsonVersion);
+        return bind(jsonParser, jsonVersion, plan, plan == null ? findVersionDeserializer(jsonVersion) : null,
+                timed, startOffset, ctx);
+    }
+
+    /**
+     * Binds the object with the conversion plan and the bean deserializer of the json version, either of which may
+     * be null
+     *
+     * @param timed       whether the listener was enabled when the value was started; it is only checked once per value
+     * @param startOffset the offset of the object in the input, reported with its size, or -1 if unknown
+     */
+    private Object bind(JsonParser jsonParser, Version jsonVersion, JsonVersionConverters.ConversionPlan plan,
+                        BeanDeserializer versionDeserializer, boolean timed, long startOffset,
+                        DeserializationContext ctx) throws IOException {
+        if (!timed)
+            return bindUntimed(jsonParser, jsonVersion, plan, versionDeserializer, false, ctx);
+        final long start = System.nanoTime();
+        Object bean = bindUntimed(jsonParser, jsonVersion, plan, versionDeserializer, true, ctx);
+        listener.onStage(handledType(), jsonVersion, JsonVersioningListener.Stage.DESERIALIZE,
+                System.nanoTime() - start, sizeSince(startOffset, jsonParser));
+        return bean;
+    }
+
+    private Object bindUntimed(JsonParser jsonParser, Version jsonVersion, JsonVersionConverters.ConversionPlan plan,
+                               BeanDeserializer versionDeserializer, boolean timed, DeserializationContext ctx)
+            throws IOException {
+        if (versionDeserializer != null)
+            return versionDeserializer.deserialize(jsonParser, ctx);
+
+        JsonParser validatingParser = new VersionValidatingParser(
+                jsonParser, findPropertiesNotInVersion(jsonVersion), jsonVersion, listener, handledType(),
+                lenientByDefault, rejectionStackTraces, ctx);
+        if (plan == null)
+            return deserializer.deserialize(validatingParser, ctx);
+        if (plan.isStreaming())
+            return deserializer.deserialize(new MigratingParser(validatingParser, plan.getMigration()), ctx);
+
+        ObjectNode node = ctx.readValue(validatingParser, ObjectNode.class);
+        if (!timed) {
+            node = plan.convert(node, jsonParser);
+        } else {
+            final long start = System.nanoTime();
+            node = plan.convert(node, jsonParser);
+            listener.onStage(handledType(), jsonVersion, JsonVersioningListener.Stage.CONVERT,
+                    System.nanoTime() - start, -1L);
+        }
+        JsonParser treeParser = new TreeNodeParser(node, jsonParser.getCodec());
+        treeParser.nextToken();
+        return deserializer.deserialize(treeParser, ctx);
+    }
+
+    /**
+     * @return the converters to run for the json version, or null if there is nothing to convert
+     */
+    private JsonVersionConverters.ConversionPlan findPlan(Version jsonVersion) {
+        if (converters.isEmpty())
+            return null;
+        JsonVersionConverters.ConversionPlan plan = converters.planFor(jsonVersion);
+        return plan.isEmpty() ? null : plan;
+    }
+
+    /**
+     * Builds the conversion plan, and the bean deserializer or property checks, of the json version ahead of the
+     * first object deserialized in it
+     */
+    void warmUp(Version jsonVersion) {
+        if (modelVersion.compareTo(jsonVersion) < 0)
+            return;
+        findPropertiesNotInVersion(jsonVersion);
+        if (findPlan(jsonVersion) == null)
+            findVersionDeserializer(jsonVersion);
+    }
+
+    /**
+     * @return the number of json versions whose bean deserializers are cached
+     */
+    int cachedVersionCount() {
+        return deserializersByVersion.size();
+    }
+
+    /**
+     * @return the number of version intervals whose conversion plans are built
+     */
+    int builtPlanCount() {
+        return converters.builtPlanCount();
+    }
+
+    /**
+     * @return a deserializer of json objects that are all in the json version, such as the elements of a stream
+     * with a stream-level version. The json version properties of the objects are not looked for; the version is
+     * set on the beans instead.
+     */
+    JsonDeserializer<Object> inVersion(Version jsonVersion) {
+        return new FixedVersionDeserializer(jsonVersion);
+    }
+
+    /**
+     * Fast path for json that starts with the version property. Nothing is buffered: the rest of the object is
+     * streamed into the bean deserializer and the version is set on the bean afterwards.
+     */
+    private Object deserializeVersionFirst(JsonParser jsonParser, boolean timed, long startOffset,
+                                           DeserializationContext ctx) throws IOException {
+        jsonParser.nextToken();
+        Version jsonVersion = readVersion(jsonParser, ctx);
+        checkModelVersion(jsonVersion, ctx);
+        Object versionValue = versionSetterTakesVersion ? jsonVersion : jsonParser.getText();
+
+        jsonParser.nextToken();
+        Object bean = bind(jsonParser, jsonVersion, timed, startOffset, ctx);
+        versionSetter.set(bean, versionValue);
+        return bean;
+    }
+
+    /**
+     * Path for tree-backed parsers: the version is read from the object node the parser is on, and the object is
+     * streamed into the bean deserializer without copying the node. The version value is set on the bean afterwards
+     * if the node does not have it.
+     */
+    private Object deserializeFromTree(JsonParser jsonParser, JsonNode versionNode, boolean timed,
+                                       DeserializationContext ctx) throws IOException {
+        Version jsonVersion;
+        if (versionNode != null) {
+            jsonVersion = Version.tryFromString(versionNode.asText());
+            if (jsonVersion == null)
+                throw invalidVersion(versionNode.asText(), ctx);
+        } else {
+            jsonVersion = resolveConfiguredVersion(ctx);
+        }
+        checkModelVersion(jsonVersion, ctx);
 
+        jsonParser.nextToken();
+        // A tree has no offsets
+        Object bean = bind(jsonParser, jsonVersion, timed, -1L, ctx);
+        if (versionNode == null)
+            versionSetter.set(bean, versionSetterTakesVersion ? jsonVersion : jsonVersion.toString());
+        return bean;
+    }
+
+    /**
+     * @return the node a tree-backed parser is on, or null if the parser does not read from a tree built by the
+     * versioning deserializers
+     */
+    private static JsonNode currentTreeNode(JsonParser jsonParser) {
+        while (jsonParser instanceof VersionValidatingParser)
+            jsonParser = ((VersionValidatingParser) jsonParser).getValidatedParser();
+        return jsonParser instanceof TreeNodeParser ? ((TreeNodeParser) jsonParser).getCurrentNode() : null;
+    }
+
+    /**
+     * @return the offset of the location in the input, in bytes or else in chars, or -1 if the parser does not tell
+     */
+    private static long offsetOf(JsonLocation location) {
+        return location.getByteOffset() >= 0 ? location.getByteOffset() : location.getCharOffset();
+    }
+
+    /**
+     * @return the bytes or chars the parser read since the offset, or -1 if either is unknown
+     */
+    private static long sizeSince(long startOffset, JsonParser jsonParser) {
+        final long offset = startOffset < 0 ? -1L : offsetOf(jsonParser.getCurrentLocation());
+        return offset < 0 ? -1L : offset - startOffset;
+    }
+
+    private Version readVersion(JsonParser jsonParser, DeserializationContext ctx) throws IOException {
+        // Parse the version straight from the parser's text buffer
+        Version jsonVersion = jsonParser.getCurrentToken() == JsonToken.VALUE_STRING
+                ? Version.tryFromChars(jsonParser.getTextCharacters(), jsonParser.getTextOffset(),
+                jsonParser.getTextLength())
+                : Version.tryFromString(jsonParser.getText());
+        if (jsonVersion == null)
+            throw invalidVersion(jsonParser.getText(), ctx);
+        return jsonVersion;
+    }
+
+    private Version resolveConfiguredVersion(DeserializationContext ctx) throws JsonMappingException {
+        Object jsonVersionObj = ctx.getAttribute(Version.JsonVersionConfigDeserializing);
+        if (jsonVersionObj == null)
+            return modelVersion;
+        if (jsonVersionObj instanceof Version)
+            return (Version) jsonVersionObj;
+        Version jsonVersion = Version.tryFromString(jsonVersionObj.toString());
+        if (jsonVersion == null)
+            throw invalidVersion(jsonVersionObj.toString(), ctx);
+        return jsonVersion;
+    }
+
+    private JsonVersioningException invalidVersion(String versionString, DeserializationContext ctx) {
+        return JsonVersioningException.invalidVersion(ctx.getParser(), handledType(), versionString,
+                capturesStackTrace(ctx, rejectionStackTraces));
+    }
+
+    /**
+     * @return whether the properties not in their version are skipped in this read rather than rejected
+     */
+    static boolean isLenient(DeserializationContext ctx, boolean lenientByDefault) {
+        Object lenient = ctx.getAttribute(Version.JsonVersionConfigLenient);
+        if (lenient == null)
+            return lenientByDefault;
+        return lenient instanceof Boolean ? (Boolean) lenient : Boolean.parseBoolean(lenient.toString());
+    }
+
+    /**
+     * @return whether the rejections of this read capture their stack traces
+     */
+    static boolean capturesStackTrace(DeserializationContext ctx, boolean rejectionStackTraces) {
+        return JsonVersioningException.capturesStackTrace(
+                ctx.getAttribute(Version.JsonVersionConfigRejectionStackTraces), rejectionStackTraces);
+    }
+
+    private void checkModelVersion(Version jsonVersion, DeserializationContext ctx) throws JsonMappingException {
+        if (modelVersion.compareTo(jsonVersion) < 0) {
+            listener.onRejected(handledType(), jsonVersion, JsonVersioningListener.Rejection.VERSION_AFTER_MODEL);
+            throw JsonVersioningException.versionAfterModel(ctx.getParser(), handledType(), jsonVersion, modelVersion,
+                    capturesStackTrace(ctx, rejectionStackTraces));
+        }
+    }
+
+    /**
+     * @return the bean deserializer of the json version, or null if the properties of the version cannot be told
+     * apart by the bean deserializer alone
+     */
+    private BeanDeserializer findVersionDeserializer(Version jsonVersion) {
+        // Creator properties, any setters, unwrapped and external type id properties bypass the property map
+        if (_nonStandardCreation || _anySetter != null || _unwrappedPropertyHandler != null
+                || _externalTypeIdHandler != null)
+            return null;
+
+        // Keyed by the version string, which is what the error messages report
+        final String versionStr = jsonVersion.toString();
+        VersionSpecificDeserializer versionDeserializer = lastVersionDeserializer;
+        if (versionDeserializer != null && (versionDeserializer.getJsonVersion() == jsonVersion
+                || versionDeserializer.getJsonVersion().toString().equals(versionStr)))
+            return versionDeserializer;
+        versionDeserializer = deserializersByVersion.get(versionStr);
+        if (versionDeserializer == null) {
+            if (deserializersByVersion.size() >= MAX_CACHED_VERSIONS)
+                return null;
+            final int interval = versionIntervals.indexOf(jsonVersion);
+            BeanPropertyMap properties = propertyMapsByInterval.get(interval);
+            if (properties == null) {
+                // Racing threads compute the same map, so it does not matter whose copy is kept
+                propertyMapsByInterval.compareAndSet(interval, null,
+                        _beanProperties.withoutProperties(findPropertiesNotInVersion(jsonVersion).keySet()));
+                properties = propertyMapsByInterval.get(interval);
+            }
+            deserializersByVersion.putIfAbsent(versionStr, new VersionSpecificDeserializer(
+                    this, properties, findPropertiesNotInVersion(jsonVersion), jsonVersion, listener,
+                    lenientByDefault, rejectionStackTraces));
+            versionDeserializer = deserializersByVersion.get(versionStr);
+        }
+        lastVersionDeserializer = versionDeserializer;
+        return versionDeserializer;
+    }
+
+    /**
+     * Deserializer for json objects that are all in one version: the conversion plan and the bean deserializer of the
+     * version are resolved once, and each object is streamed straight into them.
+     */
+    private final class FixedVersionDeserializer extends JsonDeserializer<Object> {
+        private final Version jsonVersion;
+        private final boolean inModelVersion;
+        private final JsonVersionConverters.ConversionPlan plan;
+        private final BeanDeserializer versionDeserializer;
+
+        FixedVersionDeserializer(Version jsonVersion) {
+            this.jsonVersion = jsonVersion;
+            this.inModelVersion = modelVersion.compareTo(jsonVersion) >= 0;
+            this.plan = inModelVersion ? findPlan(jsonVersion) : null;
+            this.versionDeserializer = inModelVersion && plan == null ? findVersionDeserializer(jsonVersion) : null;
+        }
+
+        @Override
+        public Object deserialize(JsonParser jsonParser, DeserializationContext ctx) throws IOException {
+            JsonToken token = jsonParser.getCurrentToken();
+            if (token != JsonToken.START_OBJECT && token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT)
+                return deserializer.deserialize(jsonParser, ctx);
+            if (jsonVersionProperty != null && versionSetter == null) {
+                // The version can only be bound with the rest of the object, so look for it as usual
+                return JsonVersioningDeserializer.this.deserialize(jsonParser, ctx);
+            }
+            if (!inModelVersion)
+                checkModelVersion(jsonVersion, ctx);
+
+            final boolean timed = listener.isEnabled();
+            Object bean = bind(jsonParser, jsonVersion, plan, versionDeserializer, timed,
+                    timed ? offsetOf(jsonParser.getTokenLocation()) : -1L, ctx);
+            if (versionSetter != null)
+                versionSetter.set(bean, versionSetterTakesVersion ? jsonVersion : jsonVersion.toString());
+            return bean;
+        }
+
+        @Override
+        public Object deserialize(JsonParser jsonParser, DeserializationContext ctx, Object intoValue)
+                throws IOException {
+            return JsonVersioningDeserializer.this.deserialize(jsonParser, ctx, intoValue);
+        }
+
+        @Override
+        public Class<?> handledType() {
+            return JsonVersioningDeserializer.this.handledType();
+        }
+    }
+
+    /**
+     * @return the properties that should not be in this version of json, by name, with the versions they are in
+     */
+    private Map<String, VersionRange> findPropertiesNotInVersion(Version jsonVersion) {
+        final int interval = versionIntervals.indexOf(jsonVersion);
+        Map<String, VersionRange> propertiesNotInVersion = propertiesNotInVersionByInterval.get(interval);
+        if (propertiesNotInVersion == null) {
+            // Racing threads compute the same map, so it does not matter whose copy is kept
+            propertiesNotInVersionByInterval.compareAndSet(interval, null, ImmutableMap.copyOf(
+                    Maps.filterValues(propertyRanges, Predicates.not(
+                            JsonVersioningPredicate.forRangeInVersion(versionIntervals.lowerBound(interval))))));
+            propertiesNotInVersion = propertiesNotInVersionByInterval.get(interval);
+        }
+        return propertiesNotInVersion;
     }
 }
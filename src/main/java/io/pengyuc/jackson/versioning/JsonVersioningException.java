@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+/**
+ * Failure to read a versioned object: its json version is not valid or is after the model version, or it has a
+ * property that is not in its json version.
+ * Rejections are meant to be cheap, since bad requests are rejected at the rate they come in: the message is only
+ * formatted when it is read, and the stack trace is only captured if {@link JsonVersioningModule#setRejectionStackTraces}
+ * or {@link Version#JsonVersionConfigRejectionStackTraces} ask for it.
+ */
+public class JsonVersioningException extends JsonMappingException {
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        /** The json version cannot be parsed */
+        INVALID_VERSION,
+        /** The json version is greater than the model version */
+        VERSION_AFTER_MODEL,
+        /** The json has a property that is not in the json version */
+        PROPERTY_NOT_IN_VERSION
+    }
+
+    private final Reason reason;
+    private final Class<?> model;
+    private final String property;
+    private final String versionString;
+    private final transient Version jsonVersion;
+    private final transient Version modelVersion;
+    // False while the Throwable constructor runs, so that it does not capture the stack trace
+    private transient boolean constructed;
+    private transient String message;
+
+    private JsonVersioningException(JsonParser parser, Reason reason, Class<?> model, String property,
+                                    String versionString, Version jsonVersion, Version modelVersion,
+                                    boolean stackTrace) {
+        super(parser, null);
+        this.reason = reason;
+        this.model = model;
+        this.property = property;
+        this.versionString = versionString;
+        this.jsonVersion = jsonVersion;
+        this.modelVersion = modelVersion;
+        constructed = true;
+        if (stackTrace)
+            fillInStackTrace();
+    }
+
+    static JsonVersioningException invalidVersion(JsonParser parser, Class<?> model, String versionString,
+                                                  boolean stackTrace) {
+        return new JsonVersioningException(parser, Reason.INVALID_VERSION, model, null, versionString, null, null,
+                stackTrace);
+    }
+
+    static JsonVersioningException versionAfterModel(JsonParser parser, Class<?> model, Version jsonVersion,
+                                                     Version modelVersion, boolean stackTrace) {
+        return new JsonVersioningException(parser, Reason.VERSION_AFTER_MODEL, model, null, jsonVersion.toString(),
+                jsonVersion, modelVersion, stackTrace);
+    }
+
+    static JsonVersioningException propertyNotInVersion(JsonParser parser, Class<?> model, String property,
+                                                        Version jsonVersion, boolean stackTrace) {
+        return new JsonVersioningException(parser, Reason.PROPERTY_NOT_IN_VERSION, model, property,
+                jsonVersion.toString(), jsonVersion, null, stackTrace);
+    }
+
+    /**
+     * @return whether the rejections capture their stack traces, given the value of
+     * {@link Version#JsonVersionConfigRejectionStackTraces} (null if not set) and the module's default
+     */
+    static boolean capturesStackTrace(Object attribute, boolean stackTracesByDefault) {
+        if (attribute == null)
+            return stackTracesByDefault;
+        return attribute instanceof Boolean ? (Boolean) attribute : Boolean.parseBoolean(attribute.toString());
+    }
+
+    /**
+     * Formats the message of a rejection
+     */
+    static String describe(Reason reason, String property, String versionString, Version modelVersion) {
+        switch (reason) {
+            case INVALID_VERSION:
+                // Parsed again, for the reason why it is not valid
+                try {
+                    Version.fromString(versionString);
+                    return "Failed to parse version string: " + versionString;
+                } catch (IllegalArgumentException e) {
+                    return "Failed to parse version string: " + e.getMessage();
+                }
+            case VERSION_AFTER_MODEL:
+                return "JSON version (" + versionString + ") is greater than the latest model version ("
+                        + modelVersion + ")";
+            default:
+                return "Property \"" + property + "\" is not in version " + versionString;
+        }
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the versioned model that rejected the json
+     */
+    public Class<?> getModel() {
+        return model;
+    }
+
+    /**
+     * @return the property that is not in the json version, or null if the version itself was rejected
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * @return the json version as it was given, which is not a valid version when the reason is
+     * {@link Reason#INVALID_VERSION}
+     */
+    public String getVersionString() {
+        return versionString;
+    }
+
+    /**
+     * @return the json version, or null if it is not valid or the exception was deserialized
+     */
+    public Version getJsonVersion() {
+        return jsonVersion;
+    }
+
+    /**
+     * @return the model version, if the json version is after it
+     */
+    public Version getModelVersion() {
+        return modelVersion;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return constructed ? super.fillInStackTrace() : this;
+    }
+
+    @Override
+    public String getOriginalMessage() {
+        if (message == null)
+            message = describe(reason, property, versionString, modelVersion);
+        return message;
+    }
+
+    @Override
+    protected String _buildMessage() {
+        // Same layout as JsonMappingException, with the message formatted now rather than when thrown
+        StringBuilder sb = new StringBuilder(getOriginalMessage());
+        JsonLocation location = getLocation();
+        if (location != null)
+            sb.append("\n at ").append(location.toString());
+        if (_path != null) {
+            sb.append(" (through reference chain: ");
+            getPathReference(sb);
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+}
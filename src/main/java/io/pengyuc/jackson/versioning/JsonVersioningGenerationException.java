@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Failure to write a versioned bean whose json version is after the model version.
+ * Like {@link JsonVersioningException}, the message is only formatted when it is read and the stack trace is only
+ * captured if asked for.
+ */
+public class JsonVersioningGenerationException extends JsonGenerationException {
+    private static final long serialVersionUID = 1L;
+
+    private final Class<?> model;
+    private final String versionString;
+    private final transient Version jsonVersion;
+    private final transient Version modelVersion;
+    // False while the Throwable constructor runs, so that it does not capture the stack trace
+    private transient boolean constructed;
+    private transient String message;
+
+    JsonVersioningGenerationException(JsonGenerator generator, Class<?> model, Version jsonVersion,
+                                      Version modelVersion, boolean stackTrace) {
+        super((String) null, generator);
+        this.model = model;
+        this.versionString = jsonVersion.toString();
+        this.jsonVersion = jsonVersion;
+        this.modelVersion = modelVersion;
+        constructed = true;
+        if (stackTrace)
+            fillInStackTrace();
+    }
+
+    public JsonVersioningException.Reason getReason() {
+        return JsonVersioningException.Reason.VERSION_AFTER_MODEL;
+    }
+
+    /**
+     * @return the versioned model of the bean
+     */
+    public Class<?> getModel() {
+        return model;
+    }
+
+    public String getVersionString() {
+        return versionString;
+    }
+
+    /**
+     * @return the json version, or null if the exception was deserialized
+     */
+    public Version getJsonVersion() {
+        return jsonVersion;
+    }
+
+    public Version getModelVersion() {
+        return modelVersion;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return constructed ? super.fillInStackTrace() : this;
+    }
+
+    @Override
+    public String getOriginalMessage() {
+        if (message == null)
+            message = JsonVersioningException.describe(getReason(), null, versionString, modelVersion);
+        return message;
+    }
+
+    @Override
+    public String getMessage() {
+        // Generation failures have no location to append
+        return getOriginalMessage();
+    }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Told by the versioning serializers and deserializers of what they do, ex: to collect {@link JsonVersioningMetrics}.
+ * Register it with {@link JsonVersioningModule#JsonVersioningModule(JsonVersioningListener)}; without one, nothing
+ * is timed or reported. Several listeners, ex: metrics and flight recorder events, are registered together with
+ * {@link #of}.
+ * <p>
+ * The methods are called on the serializing and deserializing threads, on every value, so they must be thread-safe
+ * and cheap. They do nothing by default. {@link #isEnabled} is checked once per value before anything is timed, so
+ * a listener that is switched off only costs that check.
+ */
+public abstract class JsonVersioningListener {
+    /** Does nothing; the serializers and deserializers do not even time the stages for it */
+    public static final JsonVersioningListener NO_OP = new JsonVersioningListener() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * @return a listener that tells all the listeners, in order; it is enabled while any of them is. The stages of a
+     * value are then told to all of them, so that {@link #isEnabled} is still only checked once per value: a listener
+     * that is switched off while another is on is told of the stages, and must skip them itself if it needs to.
+     */
+    public static JsonVersioningListener of(JsonVersioningListener... listeners) {
+        return of(Arrays.asList(listeners));
+    }
+
+    public static JsonVersioningListener of(List<? extends JsonVersioningListener> listeners) {
+        switch (listeners.size()) {
+            case 0:
+                return NO_OP;
+            case 1:
+                return checkNotNull(listeners.get(0));
+            default:
+                return new CompositeListener(listeners);
+        }
+    }
+
+    public enum Stage {
+        /**
+         * Buffering the fields of a json object that come before its version property, or the whole object if it
+         * has none, until its version is known
+         */
+        BUFFER,
+        /** Writing the properties of a bean in the json version, including its nested values */
+        SERIALIZE,
+        /** Binding a json object once its version is known, including its conversion and its nested values */
+        DESERIALIZE,
+        /** Converting the tree of a json object to the model version; token-stream conversions are part of binding */
+        CONVERT
+    }
+
+    public enum Rejection {
+        /** The json has a property that is not in its version */
+        PROPERTY_NOT_IN_VERSION,
+        /** The json version is greater than the model version */
+        VERSION_AFTER_MODEL
+    }
+
+    /**
+     * @return whether the values are timed and reported to the listener right now; the rejections are always reported
+     */
+    public boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * A stage was done for a value of the model in the json version. A value written in several versions at once
+     * is reported for each of the versions, with the time of the whole pass.
+     */
+    public void onStage(Class<?> model, Version jsonVersion, Stage stage, long elapsedNanos) {
+    }
+
+    /**
+     * A stage was done for a value of the model in the json version, with the size of its json
+     *
+     * @param payloadSize the bytes, or the chars if read from text, of the json object the stage is for, or -1 if the
+     *                    parser does not tell, ex: when writing or when reading from a tree
+     */
+    public void onStage(Class<?> model, Version jsonVersion, Stage stage, long elapsedNanos, long payloadSize) {
+        onStage(model, jsonVersion, stage, elapsedNanos);
+    }
+
+    /**
+     * A value of the model was rejected in the json version
+     */
+    public void onRejected(Class<?> model, Version jsonVersion, Rejection rejection) {
+    }
+
+    private static final class CompositeListener extends JsonVersioningListener {
+        private final JsonVersioningListener[] listeners;
+
+        CompositeListener(List<? extends JsonVersioningListener> listeners) {
+            List<JsonVersioningListener> copy = ImmutableList.copyOf(listeners);
+            this.listeners = copy.toArray(new JsonVersioningListener[copy.size()]);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            for (JsonVersioningListener listener : listeners) {
+                if (listener.isEnabled())
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onStage(Class<?> model, Version jsonVersion, Stage stage, long elapsedNanos) {
+            for (JsonVersioningListener listener : listeners)
+                listener.onStage(model, jsonVersion, stage, elapsedNanos);
+        }
+
+        @Override
+        public void onStage(Class<?> model, Version jsonVersion, Stage stage, long elapsedNanos, long payloadSize) {
+            for (JsonVersioningListener listener : listeners)
+                listener.onStage(model, jsonVersion, stage, elapsedNanos, payloadSize);
+        }
+
+        @Override
+        public void onRejected(Class<?> model, Version jsonVersion, Rejection rejection) {
+            for (JsonVersioningListener listener : listeners)
+                listener.onRejected(model, jsonVersion, rejection);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Listener that counts the values written, read and rejected for each model and json version, and keeps histograms
+ * of how long the stages took. The histograms have power-of-two buckets, so the percentiles are upper bounds within
+ * a factor of two.
+ * <p>
+ * The counters are striped by thread: each thread is given a stripe round-robin when it first records, so up to as
+ * many threads as there are stripes never share one. Each stripe has cache lines to itself, so that recording does
+ * not contend across cores; the stripes are only summed up when a snapshot is taken. The versions come from the json, so
+ * the versions of a model beyond {@link #MAX_VERSIONS_PER_MODEL} are counted together as {@link #OTHER_VERSIONS}.
+ * <pre>
+ * JsonVersioningMetrics metrics = new JsonVersioningMetrics();
+ * metrics.registerMBean();
+ * ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule(metrics));
+ * </pre>
+ */
+public final class JsonVersioningMetrics extends JsonVersioningListener implements JsonVersioningMetricsMXBean {
+    public static final String DEFAULT_OBJECT_NAME = "io.pengyuc.jackson.versioning:type=JsonVersioningMetrics";
+    public static final int MAX_VERSIONS_PER_MODEL = 64;
+    public static final String OTHER_VERSIONS = "other";
+
+    private static final int MAX_STRIPES = 64;
+    private static final int STAGES = Stage.values().length;
+    private static final int REJECTIONS = Rejection.values().length;
+    // The longs of a 64-byte cache line. The striped arrays start with a line of padding, and each stripe is followed
+    // by at least one, so that no line holds the longs of two stripes, nor those of a stripe and another object.
+    private static final int LINE = 8;
+    // Each stripe of the counters holds the total nanos of each stage, then the count of each rejection; the counts
+    // of the stages are those of their histograms
+    private static final int STRIPE_LENGTH = paddedStride(STAGES + REJECTIONS);
+    // Bucket i counts the durations below 2^i nanos, and at least 2^(i-1); the last one counts the longer ones too
+    private static final int BUCKETS = 40;
+    private static final int HISTOGRAM_STRIPE_LENGTH = paddedStride(BUCKETS);
+    private static final AtomicInteger NEXT_STRIPE = new AtomicInteger();
+    private static final ThreadLocal<Integer> THREAD_STRIPE = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return NEXT_STRIPE.getAndIncrement();
+        }
+    };
+
+    private final int stripeMask;
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, VersionMetrics>> metricsByModel;
+
+    /**
+     * Metrics with a stripe per available processor
+     */
+    public JsonVersioningMetrics() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param stripes the number of stripes of each counter, rounded up to a power of two and at most 64
+     */
+    public JsonVersioningMetrics(int stripes) {
+        checkArgument(stripes > 0, "Stripes must be positive: %s", stripes);
+        int powerOfTwo = Integer.highestOneBit(stripes);
+        if (powerOfTwo < stripes)
+            powerOfTwo <<= 1;
+        stripeMask = Math.min(powerOfTwo, MAX_STRIPES) - 1;
+        metricsByModel = Maps.newConcurrentMap();
+    }
+
+    @Override
+    public void onStage(Class<?> model, Version jsonVersion, Stage stage, long elapsedNanos) {
+        metricsOf(model, jsonVersion).record(stripe(), stage, elapsedNanos);
+    }
+
+    @Override
+    public void onRejected(Class<?> model, Version jsonVersion, Rejection rejection) {
+        metricsOf(model, jsonVersion).reject(stripe(), rejection);
+    }
+
+    @Override
+    public List<VersionSnapshot> getSnapshots() {
+        List<VersionSnapshot> snapshots = Lists.newArrayList();
+        for (Map.Entry<Class<?>, ConcurrentMap<String, VersionMetrics>> model : metricsByModel.entrySet()) {
+            for (Map.Entry<String, VersionMetrics> version : model.getValue().entrySet())
+                snapshots.add(version.getValue().snapshot(model.getKey().getName(), version.getKey()));
+        }
+        Collections.sort(snapshots, new Comparator<VersionSnapshot>() {
+            @Override
+            public int compare(VersionSnapshot s1, VersionSnapshot s2) {
+                int result = s1.getModel().compareTo(s2.getModel());
+                return result != 0 ? result : s1.getVersion().compareTo(s2.getVersion());
+            }
+        });
+        return snapshots;
+    }
+
+    /**
+     * @return the metrics of the model in the json version, or null if none were recorded
+     */
+    public VersionSnapshot getSnapshot(Class<?> model, String jsonVersion) {
+        ConcurrentMap<String, VersionMetrics> metricsByVersion = metricsByModel.get(model);
+        VersionMetrics metrics = metricsByVersion == null ? null : metricsByVersion.get(jsonVersion);
+        return metrics == null ? null : metrics.snapshot(model.getName(), jsonVersion);
+    }
+
+    /**
+     * Forgets everything recorded so far. Values recorded while resetting may be lost.
+     */
+    @Override
+    public void reset() {
+        metricsByModel.clear();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, under {@link #DEFAULT_OBJECT_NAME}
+     */
+    public ObjectName registerMBean() throws JMException {
+        ObjectName name = new ObjectName(DEFAULT_OBJECT_NAME);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    private int stripe() {
+        return THREAD_STRIPE.get() & stripeMask;
+    }
+
+    private VersionMetrics metricsOf(Class<?> model, Version jsonVersion) {
+        ConcurrentMap<String, VersionMetrics> metricsByVersion = metricsByModel.get(model);
+        if (metricsByVersion == null) {
+            metricsByModel.putIfAbsent(model, Maps.<String, VersionMetrics>newConcurrentMap());
+            metricsByVersion = metricsByModel.get(model);
+        }
+        String versionStr = jsonVersion.toString();
+        VersionMetrics metrics = metricsByVersion.get(versionStr);
+        if (metrics == null) {
+            if (metricsByVersion.size() >= MAX_VERSIONS_PER_MODEL)
+                versionStr = OTHER_VERSIONS;
+            metricsByVersion.putIfAbsent(versionStr, new VersionMetrics(stripeMask + 1));
+            metrics = metricsByVersion.get(versionStr);
+        }
+        return metrics;
+    }
+
+    private static int paddedStride(int length) {
+        return (length + LINE - 1) / LINE * LINE + LINE;
+    }
+
+    private static int bucketOf(long nanos) {
+        return Math.min(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0L)), BUCKETS - 1);
+    }
+
+    /**
+     * The striped counters and histograms of a model in a json version
+     */
+    private static final class VersionMetrics {
+        private final int stripes;
+        private final AtomicLongArray counters;
+        // The histogram of each stage, created when the stage is first recorded: the stripes of the buckets
+        private final AtomicReferenceArray<AtomicLongArray> histograms;
+
+        VersionMetrics(int stripes) {
+            this.stripes = stripes;
+            counters = new AtomicLongArray(LINE + stripes * STRIPE_LENGTH);
+            histograms = new AtomicReferenceArray<AtomicLongArray>(STAGES);
+        }
+
+        void record(int stripe, Stage stage, long elapsedNanos) {
+            counters.addAndGet(LINE + stripe * STRIPE_LENGTH + stage.ordinal(), elapsedNanos);
+
+            AtomicLongArray histogram = histograms.get(stage.ordinal());
+            if (histogram == null) {
+                histograms.compareAndSet(stage.ordinal(), null,
+                        new AtomicLongArray(LINE + stripes * HISTOGRAM_STRIPE_LENGTH));
+                histogram = histograms.get(stage.ordinal());
+            }
+            histogram.incrementAndGet(LINE + stripe * HISTOGRAM_STRIPE_LENGTH + bucketOf(elapsedNanos));
+        }
+
+        void reject(int stripe, Rejection rejection) {
+            counters.incrementAndGet(LINE + stripe * STRIPE_LENGTH + STAGES + rejection.ordinal());
+        }
+
+        VersionSnapshot snapshot(String model, String version) {
+            ImmutableList.Builder<StageSnapshot> stages = ImmutableList.builder();
+            for (Stage stage : Stage.values()) {
+                AtomicLongArray histogram = histograms.get(stage.ordinal());
+                if (histogram == null)
+                    continue;
+                long[] buckets = new long[BUCKETS];
+                for (int stripe = 0; stripe < stripes; stripe++) {
+                    for (int i = 0; i < BUCKETS; i++)
+                        buckets[i] += histogram.get(LINE + stripe * HISTOGRAM_STRIPE_LENGTH + i);
+                }
+                stages.add(new StageSnapshot(stage, sum(stage.ordinal()), buckets));
+            }
+            return new VersionSnapshot(model, version, stages.build(),
+                    sum(STAGES + Rejection.PROPERTY_NOT_IN_VERSION.ordinal()),
+                    sum(STAGES + Rejection.VERSION_AFTER_MODEL.ordinal()));
+        }
+
+        private long sum(int index) {
+            long sum = 0;
+            for (int stripe = 0; stripe < stripes; stripe++)
+                sum += counters.get(LINE + stripe * STRIPE_LENGTH + index);
+            return sum;
+        }
+    }
+
+    /**
+     * The metrics of a model in a json version
+     */
+    public static final class VersionSnapshot {
+        private final String model;
+        private final String version;
+        private final List<StageSnapshot> stages;
+        private final long propertyRejections;
+        private final long versionRejections;
+
+        VersionSnapshot(String model, String version, List<StageSnapshot> stages, long propertyRejections,
+                        long versionRejections) {
+            this.model = model;
+            this.version = version;
+            this.stages = stages;
+            this.propertyRejections = propertyRejections;
+            this.versionRejections = versionRejections;
+        }
+
+        /**
+         * @return the class name of the model
+         */
+        public String getModel() {
+            return model;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the stages that were recorded
+         */
+        public List<StageSnapshot> getStages() {
+            return stages;
+        }
+
+        /**
+         * @return the metrics of the stage, or null if it was not recorded
+         */
+        public StageSnapshot stage(Stage stage) {
+            for (StageSnapshot snapshot : stages) {
+                if (snapshot.getStage() == stage)
+                    return snapshot;
+            }
+            return null;
+        }
+
+        /**
+         * @return the json objects rejected for a property not in their version
+         */
+        public long getPropertyRejections() {
+            return propertyRejections;
+        }
+
+        /**
+         * @return the values rejected for a json version greater than the model version
+         */
+        public long getVersionRejections() {
+            return versionRejections;
+        }
+    }
+
+    /**
+     * How many times a stage was done, and how long it took
+     */
+    public static final class StageSnapshot {
+        private final Stage stage;
+        private final long count;
+        private final long totalNanos;
+        private final long[] buckets;
+
+        StageSnapshot(Stage stage, long totalNanos, long[] buckets) {
+            this.stage = stage;
+            this.totalNanos = totalNanos;
+            this.buckets = buckets;
+            long count = 0;
+            for (long bucket : buckets)
+                count += bucket;
+            this.count = count;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        public long getMedianNanos() {
+            return percentileNanos(0.5);
+        }
+
+        public long getP99Nanos() {
+            return percentileNanos(0.99);
+        }
+
+        public long getMaxNanos() {
+            return percentileNanos(1.0);
+        }
+
+        /**
+         * @param percentile between 0 and 1
+         * @return the upper bound of the bucket of the percentile
+         */
+        public long percentileNanos(double percentile) {
+            final long rank = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0)
+                    return i == 0 ? 0 : (1L << i) - 1;
+            }
+            return 0;
+        }
+    }
+}
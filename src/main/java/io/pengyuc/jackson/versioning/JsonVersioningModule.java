@@ -37,17 +37,34 @@ import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
 import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
 import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * Registering this Json Versioning module to the Jackson
  */
 public class JsonVersioningModule extends SimpleModule {
+    private boolean lenientDeserializing;
+    private boolean rejectionStackTraces = true;
+    private boolean versionPropertyFirst;
+
     public JsonVersioningModule() {
+        this(JsonVersioningListener.NO_OP);
+    }
+
+    /**
+     * @param listener told by the versioning serializers and deserializers of the values they write and read, and of
+     *                 the values they reject
+     */
+    public JsonVersioningModule(final JsonVersioningListener listener) {
+        checkNotNull(listener);
         setDeserializerModifier(new BeanDeserializerModifier() {
             @Override
             public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc, JsonDeserializer<?> deserializer) {
                 JsonVersioned jsonVersioned = beanDesc.getClassAnnotations().get(JsonVersioned.class);
                 if (jsonVersioned != null && BeanDeserializer.class.isInstance(deserializer)) {
-                    return new JsonVersioningDeserializer(jsonVersioned, config, beanDesc, (BeanDeserializer) deserializer);
+                    return new JsonVersioningDeserializer(jsonVersioned, config, beanDesc, (BeanDeserializer) deserializer,
+                            VersionTable.forModel(config, beanDesc, Version.fromString(jsonVersioned.value())), listener,
+                            lenientDeserializing, rejectionStackTraces);
                 }
                 return super.modifyDeserializer(config, beanDesc, deserializer);
             }
@@ -58,10 +75,44 @@ public class JsonVersioningModule extends SimpleModule {
             public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription beanDesc, JsonSerializer<?> serializer) {
                 JsonVersioned jsonVersioned = beanDesc.getClassAnnotations().get(JsonVersioned.class);
                 if (jsonVersioned != null && BeanSerializer.class.isInstance(serializer)) {
-                    return new JsonVersioningSerializer(jsonVersioned, beanDesc, (BeanSerializerBase) serializer);
+                    return new JsonVersioningSerializer(jsonVersioned, beanDesc, (BeanSerializerBase) serializer,
+                            VersionTable.forModel(config, beanDesc, Version.fromString(jsonVersioned.value())), listener,
+                            rejectionStackTraces, versionPropertyFirst);
                 }
                 return super.modifySerializer(config, beanDesc, serializer);
             }
         });
     }
+
+    /**
+     * @param lenientDeserializing whether json properties that are not in their version are skipped rather than
+     *                             failing the read, unless a reader sets {@link Version#JsonVersionConfigLenient};
+     *                             set it before the module is registered
+     */
+    public JsonVersioningModule setLenientDeserializing(boolean lenientDeserializing) {
+        this.lenientDeserializing = lenientDeserializing;
+        return this;
+    }
+
+    /**
+     * @param rejectionStackTraces whether the {@link JsonVersioningException}s and
+     *                             {@link JsonVersioningGenerationException}s capture their stack traces, true by
+     *                             default, unless a reader or writer sets
+     *                             {@link Version#JsonVersionConfigRejectionStackTraces}; set it before the module is
+     *                             registered
+     */
+    public JsonVersioningModule setRejectionStackTraces(boolean rejectionStackTraces) {
+        this.rejectionStackTraces = rejectionStackTraces;
+        return this;
+    }
+
+    /**
+     * @param versionPropertyFirst whether the json version property of the models is written ahead of their other
+     *                             properties, so that {@link VersionSniffer} and the deserializer find the version
+     *                             right away; set it before the module is registered
+     */
+    public JsonVersioningModule setVersionPropertyFirst(boolean versionPropertyFirst) {
+        this.versionPropertyFirst = versionPropertyFirst;
+        return this;
+    }
 }
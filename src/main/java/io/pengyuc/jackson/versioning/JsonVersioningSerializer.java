@@ -24,9 +24,9 @@
 
 package io.pengyuc.jackson.versioning;
 
-import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
 import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
@@ -34,39 +34,135 @@ import com.fasterxml.jackson.databind.ser.BeanSerializer;
 import com.fasterxml.jackson.databind.ser.PropertyFilter;
 import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
 import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
-import com.google.common.collect.Collections2;
+import com.fasterxml.jackson.databind.util.NameTransformer;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
 import io.pengyuc.jackson.versioning.annotations.JsonVersionProperty;
 import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Bean serializer that would check the targeting version and skip properties when needed.
  */
 public class JsonVersioningSerializer extends BeanSerializer implements ResolvableSerializer {
+    private static final int MAX_CACHED_VERSIONS = 64;
+
     private final JsonVersioned jsonVersionedAnnotation;
     private final BeanDescription beanDesc;
     private final Version modelVersion;
     private final BeanPropertyDefinition jsonVersionProperty;
+    // Index of the json version property writer in _props and _filteredProps, or -1
+    private final int versionPropertyIndex;
+    // Whether the json version property is written ahead of the other properties
+    private final boolean versionPropertyFirst;
+    // Indexes of the _props in writing order
+    private final int[] propertyOrder;
+    // Versions in which each of the _props (and _filteredProps) is present
+    private final VersionRange[] propertyRanges;
+    // Whether the values of each of the _props are worth encoding once when written in several versions at once
+    private final boolean[] sharedValues;
+    private final JsonVersionConverters converters;
+    private final VersionIntervals versionIntervals;
+    // The property writers of each version interval, built when the interval is first serialized
+    private final AtomicReferenceArray<VersionSpecificWriters.IntervalProperties> propertiesByInterval;
+    private final AtomicReferenceArray<VersionSpecificWriters.IntervalProperties> filteredPropertiesByInterval;
+    // The writers of the json versions serialized so far by version string, and the last ones used
+    private final ConcurrentMap<String, VersionSpecificWriters> writersByVersion;
+    private volatile VersionSpecificWriters lastWriters;
+    private final JsonVersioningListener listener;
+    // Whether the rejections capture their stack traces, unless the writer says otherwise
+    private final boolean rejectionStackTraces;
 
     public JsonVersioningSerializer(JsonVersioned jsonVersionedAnnotation, BeanDescription beanDesc, BeanSerializerBase serializer) {
+        this(jsonVersionedAnnotation, beanDesc, serializer, null, JsonVersioningListener.NO_OP, true,
+                false);
+    }
+
+    /**
+     * @param versionTable the build-time version table of the model, or null to look up its annotations
+     * @param listener told of the serialized beans and of the rejected versions
+     * @param rejectionStackTraces whether the rejections capture their stack traces
+     * @param versionPropertyFirst whether the json version property is written ahead of the other properties
+     */
+    JsonVersioningSerializer(JsonVersioned jsonVersionedAnnotation, BeanDescription beanDesc,
+                             BeanSerializerBase serializer, VersionTable versionTable,
+                             JsonVersioningListener listener, boolean rejectionStackTraces,
+                             boolean versionPropertyFirst) {
         super(serializer);
         this.jsonVersionedAnnotation = jsonVersionedAnnotation;
         this.beanDesc = beanDesc;
         this.modelVersion = Version.fromString(jsonVersionedAnnotation.value());
 
         BeanPropertyDefinition versionProperty = null;
+        Map<String, BeanPropertyDefinition> propertyDefs = Maps.newHashMap();
         for (BeanPropertyDefinition propertyDef: beanDesc.findProperties()) {
-            if ((propertyDef.hasGetter() && propertyDef.getGetter().hasAnnotation(JsonVersionProperty.class))
-                    || (propertyDef.hasField() && propertyDef.getField().hasAnnotation(JsonVersionProperty.class))) {
+            propertyDefs.put(propertyDef.getName(), propertyDef);
+            if (versionProperty != null)
+                continue;
+            if (versionTable != null ? versionTable.isVersionProperty(propertyDef)
+                    : ((propertyDef.hasGetter() && propertyDef.getGetter().hasAnnotation(JsonVersionProperty.class))
+                    || (propertyDef.hasField() && propertyDef.getField().hasAnnotation(JsonVersionProperty.class)))) {
                 // Only support one attribute with JsonVersionProperty annotation
                 versionProperty = propertyDef;
-                break;
             }
         }
         jsonVersionProperty = versionProperty;
+
+        int versionIndex = -1;
+        propertyRanges = new VersionRange[_props.length];
+        for (int i = 0; i < _props.length; i++) {
+            BeanPropertyDefinition propertyDef = versionTable == null ? null : propertyDefs.get(_props[i].getName());
+            if (propertyDef != null) {
+                if (jsonVersionProperty != null && versionTable.isVersionProperty(propertyDef))
+                    versionIndex = i;
+                propertyRanges[i] = versionTable.rangeOf(propertyDef, true);
+            } else {
+                if (jsonVersionProperty != null && _props[i].getAnnotation(JsonVersionProperty.class) != null)
+                    versionIndex = i;
+                propertyRanges[i] = VersionRange.forProperty(_props[i]);
+            }
+        }
+        versionPropertyIndex = versionIndex;
+        sharedValues = new boolean[_props.length];
+        for (int i = 0; i < _props.length; i++)
+            sharedValues[i] = i != versionIndex && !isScalar(_props[i].getType().getRawClass());
+        this.versionPropertyFirst = versionPropertyFirst && versionIndex >= 0;
+        propertyOrder = new int[_props.length];
+        for (int i = 0, next = 0; i < _props.length; i++) {
+            if (this.versionPropertyFirst && i == 0)
+                propertyOrder[next++] = versionIndex;
+            if (!this.versionPropertyFirst || i != versionIndex)
+                propertyOrder[next++] = i;
+        }
+        converters = JsonVersionConverters.forType(beanDesc.getBeanClass(), modelVersion, versionTable);
+        versionIntervals = VersionIntervals.of(Iterables.concat(Arrays.asList(propertyRanges), converters.getRanges()));
+        propertiesByInterval =
+                new AtomicReferenceArray<VersionSpecificWriters.IntervalProperties>(versionIntervals.size());
+        filteredPropertiesByInterval =
+                new AtomicReferenceArray<VersionSpecificWriters.IntervalProperties>(versionIntervals.size());
+        writersByVersion = Maps.newConcurrentMap();
+        this.listener = listener;
+        this.rejectionStackTraces = rejectionStackTraces;
+    }
+
+    /**
+     * @return whether the values of the type are single tokens, which cost as much to copy as to encode again
+     */
+    private static boolean isScalar(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || CharSequence.class.isAssignableFrom(type)
+                || Number.class.isAssignableFrom(type) || type == Boolean.class || type == Character.class
+                || Date.class.isAssignableFrom(type) || type == UUID.class;
     }
 
     @Override
@@ -80,6 +176,191 @@ public class JsonVersioningSerializer extends BeanSerializer implements Resolvab
     }
 
     protected void serializeFieldsWithVersioning(Object bean, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        // Nothing is timed without a listener
+        final boolean timed = listener.isEnabled();
+        final long start = timed ? System.nanoTime() : 0L;
+        if (gen instanceof FanOutGenerator) {
+            final VersionSpecificWriters[] writers = serializeFieldsFannedOut(bean, (FanOutGenerator) gen, provider);
+            if (timed) {
+                final long elapsedNanos = System.nanoTime() - start;
+                for (VersionSpecificWriters versionWriters : writers) {
+                    if (versionWriters != null)
+                        onSerialized(versionWriters.getJsonVersion(), elapsedNanos);
+                }
+            }
+            return;
+        }
+        final VersionSpecificWriters writers =
+                forVersion(resolveVersion(bean, provider.getAttribute(Version.JsonVersionConfigSerializing), gen, provider));
+        serializeFields(bean, writers, gen, provider);
+        if (timed)
+            onSerialized(writers.getJsonVersion(), System.nanoTime() - start);
+    }
+
+    /**
+     * Writes the fields of the bean with the writers of its json version, after its START_OBJECT has been written;
+     * the same loop as the bean serializer's, with the json version property written as the version
+     */
+    private void serializeFields(Object bean, VersionSpecificWriters writers, JsonGenerator gen,
+                                 SerializerProvider provider) throws IOException {
+        final boolean filtered = _filteredProps != null && provider.getActiveView() != null;
+        final BeanPropertyWriter[] properties = writers.getProperties(filtered);
+        final int versionIndex = writers.getVersionPropertyIndex(filtered);
+        final PropertyFilter filter =
+                _propertyFilterId == null ? null : findPropertyFilter(provider, _propertyFilterId, bean);
+        int i = 0;
+        try {
+            for (; i < properties.length; i++) {
+                final BeanPropertyWriter property = i == versionIndex ? writers.getVersionWriter(filtered) : properties[i];
+                if (filter == null)
+                    property.serializeAsField(bean, gen, provider);
+                else
+                    filter.serializeAsField(bean, gen, provider, property);
+            }
+            if (_anyGetterWriter != null) {
+                if (filter == null)
+                    _anyGetterWriter.getAndSerialize(bean, gen, provider);
+                else
+                    _anyGetterWriter.getAndFilter(bean, gen, provider, filter);
+            }
+        } catch (Exception e) {
+            wrapAndThrow(provider, e, bean, i == properties.length ? "[anySetter]" : properties[i].getName());
+        } catch (StackOverflowError e) {
+            throw infiniteRecursion(gen, e, bean, i == properties.length ? "[anySetter]" : properties[i].getName());
+        }
+    }
+
+    /**
+     * @return the exception of the bean serializer for a bean that contains itself
+     */
+    private static JsonMappingException infiniteRecursion(JsonGenerator gen, StackOverflowError e, Object bean,
+                                                          String propertyName) {
+        JsonMappingException mappingException =
+                new JsonMappingException(gen, "Infinite recursion (StackOverflowError)", e);
+        mappingException.prependPath(new JsonMappingException.Reference(bean, propertyName));
+        return mappingException;
+    }
+
+    private void onSerialized(Version jsonVersion, long elapsedNanos) {
+        listener.onStage(handledType(), jsonVersion, JsonVersioningListener.Stage.SERIALIZE, elapsedNanos, -1L);
+    }
+
+    /**
+     * Writes the fields of the bean to each active target of the generator, in the target's version. Each property is
+     * written once to all the targets whose versions have the same writer for it, so its value is read and serialized
+     * once for them; nested beans narrow the targets down further.
+     *
+     * @return the writers of the active targets, by target
+     */
+    private VersionSpecificWriters[] serializeFieldsFannedOut(Object bean, FanOutGenerator gen, SerializerProvider provider) throws IOException {
+        final long targets = gen.getActiveTargets();
+        final VersionSpecificWriters[] serializers = new VersionSpecificWriters[gen.getTargetCount()];
+        VersionSpecificWriters sharedWriters = null;
+        boolean shared = true;
+        for (long remaining = targets; remaining != 0; remaining &= remaining - 1) {
+            final int target = Long.numberOfTrailingZeros(remaining);
+            serializers[target] = forVersion(resolveVersion(bean, gen.getTargetVersion(target), gen, provider));
+            if (sharedWriters == null)
+                sharedWriters = serializers[target];
+            shared &= serializers[target] == sharedWriters;
+        }
+        if (shared) {
+            serializeFields(bean, sharedWriters, gen, provider);
+            return serializers;
+        }
+        if (gen.isSharingValue()) {
+            // The enclosing value is written differently in some of its versions after all
+            throw gen.abortSharedValue();
+        }
+
+        try {
+            if (_propertyFilterId != null) {
+                // The filter decides on the writers of each version, so the targets only share whole versions
+                for (long remaining = targets; remaining != 0; ) {
+                    final VersionSpecificWriters writers = serializers[Long.numberOfTrailingZeros(remaining)];
+                    final long group = targetsOf(serializers, remaining, writers);
+                    remaining &= ~group;
+                    gen.setActiveTargets(group);
+                    serializeFields(bean, writers, gen, provider);
+                }
+                return serializers;
+            }
+
+            final boolean filtered = _filteredProps != null && provider.getActiveView() != null;
+            int i = 0;
+            try {
+                for (int n = 0; n < _props.length; n++) {
+                    i = propertyOrder[n];
+                    for (long remaining = targets; remaining != 0; ) {
+                        final BeanPropertyWriter property =
+                                serializers[Long.numberOfTrailingZeros(remaining)].getPropertyAt(i, filtered);
+                        long group = 0;
+                        for (long candidates = remaining; candidates != 0; candidates &= candidates - 1) {
+                            if (serializers[Long.numberOfTrailingZeros(candidates)].getPropertyAt(i, filtered) == property)
+                                group |= Long.lowestOneBit(candidates);
+                        }
+                        remaining &= ~group;
+                        if (property != null) {
+                            gen.setActiveTargets(group);
+                            if (sharedValues[i])
+                                serializeShared(property, bean, gen, provider);
+                            else
+                                property.serializeAsField(bean, gen, provider);
+                        }
+                    }
+                }
+                i = _props.length;
+                if (_anyGetterWriter != null) {
+                    gen.setActiveTargets(targets);
+                    _anyGetterWriter.getAndSerialize(bean, gen, provider);
+                }
+            } catch (Exception e) {
+                wrapAndThrow(provider, e, bean, i == _props.length ? "[anySetter]" : _props[i].getName());
+            } catch (StackOverflowError e) {
+                throw infiniteRecursion(gen, e, bean, i == _props.length ? "[anySetter]" : _props[i].getName());
+            }
+        } finally {
+            gen.setActiveTargets(targets);
+        }
+        return serializers;
+    }
+
+    /**
+     * Writes the property to the active targets, encoding its value once if they all write it the same
+     */
+    private static void serializeShared(BeanPropertyWriter property, Object bean, FanOutGenerator gen,
+                                        SerializerProvider provider) throws Exception {
+        if (!gen.startSharedValue()) {
+            property.serializeAsField(bean, gen, provider);
+            return;
+        }
+        try {
+            property.serializeAsField(bean, gen, provider);
+            gen.endSharedValue();
+            return;
+        } catch (FanOutGenerator.SharingAbortedException e) {
+            // Written again token by token below, so the getters of the value run again
+        } finally {
+            gen.discardSharedValue();
+        }
+        property.serializeAsField(bean, gen, provider);
+    }
+
+    private static long targetsOf(VersionSpecificWriters[] serializers, long targets, VersionSpecificWriters writers) {
+        long group = 0;
+        for (long remaining = targets; remaining != 0; remaining &= remaining - 1) {
+            if (serializers[Long.numberOfTrailingZeros(remaining)] == writers)
+                group |= Long.lowestOneBit(remaining);
+        }
+        return group;
+    }
+
+    /**
+     * @return the json version of the bean: its json version property if set, otherwise the configured version,
+     * otherwise the model version
+     */
+    private Version resolveVersion(Object bean, Object configuredVersion, JsonGenerator gen,
+                                   SerializerProvider provider) throws IOException {
         Version jsonVersion;
         Object jsonVersionObj = null;
 
@@ -87,7 +368,7 @@ public class JsonVersioningSerializer extends BeanSerializer implements Resolvab
             jsonVersionObj = jsonVersionProperty.getAccessor().getValue(bean);
         }
         if (jsonVersionObj == null) {
-            jsonVersionObj = provider.getAttribute(Version.JsonVersionConfigSerializing);
+            jsonVersionObj = configuredVersion;
         }
 
         if (jsonVersionObj == null) {
@@ -99,45 +380,131 @@ public class JsonVersioningSerializer extends BeanSerializer implements Resolvab
         }
 
         if (modelVersion.compareTo(jsonVersion) < 0) {
-            throw new JsonGenerationException("JSON version (" + jsonVersion.toString() + ")" +
-                    " is greater than the latest model version (" + modelVersion.toString() + ")", gen);
+            listener.onRejected(handledType(), jsonVersion, JsonVersioningListener.Rejection.VERSION_AFTER_MODEL);
+            throw new JsonVersioningGenerationException(gen, handledType(), jsonVersion, modelVersion,
+                    JsonVersioningException.capturesStackTrace(
+                            provider.getAttribute(Version.JsonVersionConfigRejectionStackTraces), rejectionStackTraces));
         }
+        return jsonVersion;
+    }
 
-        final Collection<BeanPropertyWriter> properties;
-        if (_filteredProps != null && provider.getActiveView() != null) {
-            properties = Collections2.filter(Arrays.asList(_filteredProps),
-                    JsonVersioningPredicate.forPropertyInVersion(jsonVersion));
-        } else {
-            properties = Collections2.filter(Arrays.asList(_props),
-                    JsonVersioningPredicate.forPropertyInVersion(jsonVersion));
+    /**
+     * Builds the writers of the json version ahead of the first bean serialized in it
+     */
+    void warmUp(Version jsonVersion) {
+        if (modelVersion.compareTo(jsonVersion) >= 0)
+            forVersion(jsonVersion);
+    }
+
+    /**
+     * @return the writers of the json version, from the cache if the version was serialized before
+     */
+    private VersionSpecificWriters forVersion(Version jsonVersion) {
+        // Writers pinned to one version keep hitting the last writers
+        // Keyed by the version string, which is what the serializer writes; equal versions like 1 and 1.0 do not share
+        final String versionStr = jsonVersion.toString();
+        VersionSpecificWriters writers = lastWriters;
+        if (writers != null && (writers.getJsonVersion() == jsonVersion
+                || writers.getJsonVersion().toString().equals(versionStr)))
+            return writers;
+        writers = writersByVersion.get(versionStr);
+        if (writers == null) {
+            // The writers of the interval are shared by its versions, so versions past the cache only cost the
+            // version property writer
+            final int interval = versionIntervals.indexOf(jsonVersion);
+            writers = new VersionSpecificWriters(jsonVersion, findProperties(propertiesByInterval, _props, interval),
+                    _filteredProps == null ? null : findProperties(filteredPropertiesByInterval, _filteredProps, interval));
+            // Racing threads build the same writers; the number of cached versions is bounded as the versions
+            // may come from the serialized beans
+            if (writersByVersion.size() < MAX_CACHED_VERSIONS)
+                writersByVersion.putIfAbsent(versionStr, writers);
         }
+        lastWriters = writers;
+        return writers;
+    }
 
-        final PropertyFilter filter = _propertyFilterId == null ? null : findPropertyFilter(provider, _propertyFilterId, bean);
-        for (BeanPropertyWriter property : properties) {
-            if (property == null)
-                continue;
+    /**
+     * @return the number of json versions whose writers are cached
+     */
+    int cachedVersionCount() {
+        return writersByVersion.size();
+    }
 
-            if (jsonVersionProperty != null && property.getAnnotation(JsonVersionProperty.class) != null) {
-                gen.writeFieldName(property.getSerializedName());
-                gen.writeString(jsonVersion.toString());
-                continue;
-            }
-            try {
-                if (filter == null)
-                    property.serializeAsField(bean, gen, provider);
-                else
-                    filter.serializeAsField(bean, gen, provider, property);
-            } catch (Exception e) {
-                wrapAndThrow(provider, e, bean, property.getName());
-            }
+    /**
+     * @return the number of version intervals whose writers are built
+     */
+    int builtIntervalCount() {
+        int count = 0;
+        for (int i = 0; i < propertiesByInterval.length(); i++) {
+            if (propertiesByInterval.get(i) != null)
+                count++;
         }
-        if (_anyGetterWriter != null) {
-            try {
-                _anyGetterWriter.getAndFilter(bean, gen, provider, filter);
-            } catch (Exception e) {
-                wrapAndThrow(provider, e, bean, "[anySetter]");
+        return count;
+    }
+
+    private VersionSpecificWriters.IntervalProperties findProperties(
+            AtomicReferenceArray<VersionSpecificWriters.IntervalProperties> propertiesByInterval,
+            BeanPropertyWriter[] allProperties, int interval) {
+        VersionSpecificWriters.IntervalProperties properties = propertiesByInterval.get(interval);
+        if (properties == null) {
+            // Racing threads compute the same writers, so it does not matter whose copy is kept
+            propertiesByInterval.compareAndSet(interval, null,
+                    buildProperties(allProperties, versionIntervals.lowerBound(interval)));
+            properties = propertiesByInterval.get(interval);
+        }
+        return properties;
+    }
+
+    /**
+     * @return the non-null property writers that are in the version, in serializing order. The properties are renamed
+     * back, or left out, as the token-stream migrations of the version would have to see them.
+     */
+    private VersionSpecificWriters.IntervalProperties buildProperties(BeanPropertyWriter[] allProperties,
+                                                                      Version jsonVersion) {
+        Predicate<VersionRange> inVersion = JsonVersioningPredicate.forRangeInVersion(jsonVersion);
+        JsonVersionMigration migration = converters.isEmpty()
+                ? JsonVersionMigration.IDENTITY : converters.planFor(jsonVersion).getMigration();
+        List<BeanPropertyWriter> writersInVersion = Lists.newArrayListWithCapacity(allProperties.length);
+        List<Integer> indexesInVersion = Lists.newArrayListWithCapacity(allProperties.length);
+        int versionIndex = -1;
+        for (int i = 0; i < allProperties.length; i++) {
+            BeanPropertyWriter property = allProperties[i];
+            if (property == null || !inVersion.apply(propertyRanges[i]))
+                continue;
+            if (i == versionPropertyIndex) {
+                if (versionPropertyFirst) {
+                    versionIndex = 0;
+                    writersInVersion.add(0, property);
+                    indexesInVersion.add(0, i);
+                    continue;
+                }
+                versionIndex = writersInVersion.size();
+            } else if (!migration.isIdentity()) {
+                final String name = migration.originalName(property.getName());
+                if (name == null)
+                    continue;
+                if (!name.equals(property.getName()))
+                    property = property.rename(renameTo(name, property.getName()));
             }
+            writersInVersion.add(property);
+            indexesInVersion.add(i);
         }
+        return new VersionSpecificWriters.IntervalProperties(
+                writersInVersion.toArray(new BeanPropertyWriter[writersInVersion.size()]),
+                Ints.toArray(indexesInVersion), versionIndex, allProperties.length);
     }
 
+    private static NameTransformer renameTo(final String name, final String modelName) {
+        return new NameTransformer() {
+            @Override
+            public String transform(String original) {
+                return name;
+            }
+
+            @Override
+            public String reverse(String transformed) {
+                return modelName;
+            }
+        };
+    }
 }
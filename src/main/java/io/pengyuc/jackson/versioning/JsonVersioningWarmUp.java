@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Builds the serializers and deserializers of versioned models, and their structures for each json version, before
+ * the first value is read or written. Otherwise the first value of each model and version pays for the bean
+ * introspection and for building them.
+ * <p>
+ * The serializers and deserializers are cached by the mapper, so the mapper warmed up must be the one, or share the
+ * caches of the one, that reads and writes the values. Without versions, each model is warmed up in its own model
+ * version; versions after the model version of a model are skipped for it.
+ * <pre>
+ * JsonVersioningWarmUp.Report report = JsonVersioningWarmUp.forMapper(mapper)
+ *         .withPackage("com.example.models")
+ *         .withVersions("0.8", "0.9", "1.0")
+ *         .run(pool);
+ * </pre>
+ */
+public final class JsonVersioningWarmUp {
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final ObjectMapper mapper;
+    private final Set<Class<?>> models;
+    private final List<Version> versions;
+
+    private JsonVersioningWarmUp(ObjectMapper mapper, Set<Class<?>> models, List<Version> versions) {
+        this.mapper = mapper;
+        this.models = models;
+        this.versions = versions;
+    }
+
+    public static JsonVersioningWarmUp forMapper(ObjectMapper mapper) {
+        return new JsonVersioningWarmUp(checkNotNull(mapper), ImmutableSet.<Class<?>>of(), ImmutableList.<Version>of());
+    }
+
+    /**
+     * @param models the classes to warm up; those that are not versioned models are skipped
+     */
+    public JsonVersioningWarmUp withModels(Class<?>... models) {
+        return withModels(Arrays.asList(models));
+    }
+
+    public JsonVersioningWarmUp withModels(Iterable<? extends Class<?>> models) {
+        ImmutableSet.Builder<Class<?>> builder = ImmutableSet.<Class<?>>builder().addAll(this.models);
+        for (Class<?> model : models) {
+            if (isVersionedModel(model))
+                builder.add(model);
+        }
+        return new JsonVersioningWarmUp(mapper, builder.build(), versions);
+    }
+
+    /**
+     * Adds the versioned models of the package and its sub packages, including nested classes, found in the
+     * directories and jars of the context class loader. The classes are loaded, but not initialized.
+     */
+    public JsonVersioningWarmUp withPackage(String packageName) throws IOException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null)
+            classLoader = JsonVersioningWarmUp.class.getClassLoader();
+        final String packagePath = packageName.replace('.', '/');
+        Set<String> classNames = Sets.newTreeSet();
+        Enumeration<URL> packageUrls = classLoader.getResources(packagePath);
+        while (packageUrls.hasMoreElements()) {
+            URL packageUrl = packageUrls.nextElement();
+            if ("file".equals(packageUrl.getProtocol())) {
+                try {
+                    findClassNames(new File(packageUrl.toURI()), packageName, classNames);
+                } catch (URISyntaxException e) {
+                    throw new IOException("Cannot scan " + packageUrl, e);
+                }
+            } else if ("jar".equals(packageUrl.getProtocol())) {
+                findClassNames(((JarURLConnection) packageUrl.openConnection()).getJarFile(), packagePath, classNames);
+            }
+        }
+
+        ImmutableSet.Builder<Class<?>> builder = ImmutableSet.<Class<?>>builder().addAll(this.models);
+        for (String className : classNames) {
+            try {
+                addVersionedModels(Class.forName(className, false, classLoader), builder);
+            } catch (ClassNotFoundException | LinkageError e) {
+                // Classes that cannot be loaded cannot be serialized either
+            }
+        }
+        return new JsonVersioningWarmUp(mapper, builder.build(), versions);
+    }
+
+    public JsonVersioningWarmUp withVersions(Version... versions) {
+        return new JsonVersioningWarmUp(mapper, models, ImmutableList.copyOf(versions));
+    }
+
+    public JsonVersioningWarmUp withVersions(String... versions) {
+        ImmutableList.Builder<Version> builder = ImmutableList.builder();
+        for (String version : versions)
+            builder.add(Version.fromString(version));
+        return new JsonVersioningWarmUp(mapper, models, builder.build());
+    }
+
+    public Set<Class<?>> getModels() {
+        return models;
+    }
+
+    public List<Version> getVersions() {
+        return versions;
+    }
+
+    /**
+     * Warms up the models one after the other on the calling thread
+     *
+     * @throws JsonMappingException if a model cannot be serialized or deserialized
+     */
+    public Report run() throws JsonMappingException {
+        final long start = System.nanoTime();
+        for (Class<?> model : models)
+            warmUp(model);
+        return new Report(models.size(), versions.size(), System.nanoTime() - start);
+    }
+
+    /**
+     * Warms up the models in parallel on the pool
+     *
+     * @throws JsonMappingException if a model cannot be serialized or deserialized
+     */
+    public Report run(ForkJoinPool pool) throws JsonMappingException {
+        final long start = System.nanoTime();
+        final List<Class<?>> modelList = ImmutableList.copyOf(models);
+        final JsonMappingException[] failures = new JsonMappingException[modelList.size()];
+        pool.invoke(new WarmUpTask(modelList, failures, 0, modelList.size()));
+        for (JsonMappingException failure : failures) {
+            if (failure != null)
+                throw failure;
+        }
+        return new Report(models.size(), versions.size(), System.nanoTime() - start);
+    }
+
+    private void warmUp(Class<?> model) throws JsonMappingException {
+        final JavaType type = mapper.constructType(model);
+        // The provider and the context are per call, but the caches they fill are the mapper's
+        JsonSerializer<Object> serializer = mapper.getSerializerProviderInstance()
+                .findTypedValueSerializer(type, true, null);
+        JsonDeserializer<Object> deserializer = ((DefaultDeserializationContext) mapper.getDeserializationContext())
+                .createInstance(mapper.getDeserializationConfig(), null, mapper.getInjectableValues())
+                .findRootValueDeserializer(type);
+
+        List<Version> modelVersions = versions.isEmpty()
+                ? ImmutableList.of(Version.fromString(model.getAnnotation(JsonVersioned.class).value()))
+                : versions;
+        for (Version version : modelVersions) {
+            if (serializer instanceof JsonVersioningSerializer)
+                ((JsonVersioningSerializer) serializer).warmUp(version);
+            if (deserializer instanceof JsonVersioningDeserializer)
+                ((JsonVersioningDeserializer) deserializer).warmUp(version);
+        }
+    }
+
+    /**
+     * Adds the names of the top-level classes in the directory of the package and its sub directories
+     */
+    private static void findClassNames(File directory, String packageName, Set<String> classNames) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            String fileName = file.getName();
+            if (file.isDirectory())
+                findClassNames(file, packageName + "." + fileName, classNames);
+            else if (fileName.endsWith(CLASS_SUFFIX) && fileName.indexOf('$') < 0)
+                classNames.add(packageName + "." + fileName.substring(0, fileName.length() - CLASS_SUFFIX.length()));
+        }
+    }
+
+    /**
+     * Adds the names of the top-level classes of the jar in the package and its sub packages
+     */
+    private static void findClassNames(JarFile jarFile, String packagePath, Set<String> classNames) {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            String entryName = entries.nextElement().getName();
+            if (entryName.startsWith(packagePath + "/") && entryName.endsWith(CLASS_SUFFIX) && entryName.indexOf('$') < 0)
+                classNames.add(entryName.substring(0, entryName.length() - CLASS_SUFFIX.length()).replace('/', '.'));
+        }
+    }
+
+    private static boolean isVersionedModel(Class<?> cls) {
+        return cls.isAnnotationPresent(JsonVersioned.class)
+                && !cls.isInterface() && !Modifier.isAbstract(cls.getModifiers());
+    }
+
+    private static void addVersionedModels(Class<?> cls, ImmutableSet.Builder<Class<?>> builder) {
+        if (isVersionedModel(cls))
+            builder.add(cls);
+        for (Class<?> nested : cls.getDeclaredClasses())
+            addVersionedModels(nested, builder);
+    }
+
+    /**
+     * How much was warmed up, and how long it took
+     */
+    public static final class Report {
+        private final int modelCount;
+        private final int versionCount;
+        private final long elapsedNanos;
+
+        private Report(int modelCount, int versionCount, long elapsedNanos) {
+            this.modelCount = modelCount;
+            this.versionCount = versionCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getModelCount() {
+            return modelCount;
+        }
+
+        /**
+         * @return the number of versions each model was warmed up in, 0 if only in its model version
+         */
+        public int getVersionCount() {
+            return versionCount;
+        }
+
+        public long getElapsed(TimeUnit unit) {
+            return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return "Warmed up " + modelCount + " models in " + (versionCount == 0 ? "their model" : versionCount)
+                    + " versions in " + getElapsed(TimeUnit.MILLISECONDS) + " ms";
+        }
+    }
+
+    /**
+     * Warms up a range of models, splitting it in halves until a single model is left
+     */
+    private final class WarmUpTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Class<?>> models;
+        private final JsonMappingException[] failures;
+        private final int fromModel;
+        private final int toModel;
+
+        WarmUpTask(List<Class<?>> models, JsonMappingException[] failures, int fromModel, int toModel) {
+            this.models = models;
+            this.failures = failures;
+            this.fromModel = fromModel;
+            this.toModel = toModel;
+        }
+
+        @Override
+        protected void compute() {
+            if (toModel - fromModel > 1) {
+                final int middle = (fromModel + toModel) >>> 1;
+                invokeAll(new WarmUpTask(models, failures, fromModel, middle),
+                        new WarmUpTask(models, failures, middle, toModel));
+            } else if (toModel > fromModel) {
+                try {
+                    warmUp(models.get(fromModel));
+                } catch (JsonMappingException e) {
+                    // Reported by the calling thread, once all the models are done
+                    failures[fromModel] = e;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+
+/**
+ * Parser delegate that applies a {@link JsonVersionMigration} to the fields of an object while its tokens are streamed
+ * into the bean deserializer. Renamed fields are reported under their new names and dropped fields are skipped.
+ * Transformed values and inserted fields are replayed from small trees by switching the delegate, the same way
+ * {@link com.fasterxml.jackson.core.util.JsonParserSequence} switches between parsers.
+ */
+final class MigratingParser extends JsonParserDelegate {
+    private final JsonParser source;
+    private final JsonVersionMigration migration;
+    // Depth of the current token below the fields of the migrated object
+    private int depth;
+    // Set once the end of the migrated object is reached, from then on tokens are passed through
+    private boolean finished;
+    // New name of the current field, or null
+    private String renamedField;
+    // Transform for the value of the current field, or null
+    private JsonVersionMigration.FieldAction pendingTransform;
+
+    /**
+     * @param parser parser positioned inside the object to migrate, at its START_OBJECT, one of its FIELD_NAMEs or its
+     *               END_OBJECT
+     */
+    MigratingParser(JsonParser parser, JsonVersionMigration migration) throws IOException {
+        super(parser);
+        this.source = parser;
+        this.migration = migration;
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.FIELD_NAME || token == JsonToken.END_OBJECT)
+            onSourceToken(token);
+    }
+
+    @Override
+    public JsonToken nextToken() throws IOException {
+        renamedField = null;
+        if (delegate != source) {
+            // Replaying a transformed value or the inserted fields
+            JsonToken token = delegate.nextToken();
+            if (token != null)
+                return token;
+            delegate = source;
+        }
+        if (pendingTransform != null) {
+            JsonVersionMigration.FieldAction action = pendingTransform;
+            pendingTransform = null;
+            source.nextToken();
+            JsonNode value = source.readValueAsTree();
+            return replay(action.transform(value), false);
+        }
+        return onSourceToken(source.nextToken());
+    }
+
+    @Override
+    public JsonToken nextValue() throws IOException {
+        // JsonParserDelegate hands nextValue() straight to the delegate, which would bypass the migration
+        JsonToken token = nextToken();
+        if (token == JsonToken.FIELD_NAME)
+            token = nextToken();
+        return token;
+    }
+
+    @Override
+    public JsonParser skipChildren() throws IOException {
+        JsonToken token = delegate.getCurrentToken();
+        if (delegate == source && !finished && (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)) {
+            source.skipChildren();
+            // At depth 0 it is the START_OBJECT of the migrated object itself
+            if (depth == 0)
+                finished = true;
+            else
+                depth--;
+            return this;
+        }
+        delegate.skipChildren();
+        return this;
+    }
+
+    @Override
+    public String getCurrentName() throws IOException {
+        return renamedField != null ? renamedField : delegate.getCurrentName();
+    }
+
+    @Override
+    public String getText() throws IOException {
+        return renamedField != null ? renamedField : delegate.getText();
+    }
+
+    private JsonToken onSourceToken(JsonToken token) throws IOException {
+        while (!finished && token != null) {
+            switch (token) {
+                case START_OBJECT:
+                case START_ARRAY:
+                    depth++;
+                    return token;
+                case END_ARRAY:
+                    depth--;
+                    return token;
+                case END_OBJECT:
+                    if (depth-- > 0)
+                        return token;
+                    finished = true;
+                    // The END_OBJECT of the inserted fields stands in for the END_OBJECT of the object
+                    return migration.hasInserts() ? replay(migration.getInsertsNode(), true) : token;
+                case FIELD_NAME:
+                    if (depth > 0)
+                        return token;
+                    JsonVersionMigration.FieldAction action = migration.findAction(source.getCurrentName());
+                    if (action == null)
+                        return token;
+                    if (action.isDrop()) {
+                        source.nextToken();
+                        source.skipChildren();
+                        token = source.nextToken();
+                        continue;
+                    }
+                    renamedField = action.getTargetName();
+                    if (action.getTransform() != null)
+                        pendingTransform = action;
+                    return token;
+                default:
+                    return token;
+            }
+        }
+        return token;
+    }
+
+    /**
+     * Switches to the tokens of the node
+     *
+     * @param skipStart whether to leave out the START_OBJECT of the node
+     */
+    private JsonToken replay(JsonNode node, boolean skipStart) throws IOException {
+        JsonParser parser = new TreeNodeParser(node, source.getCodec());
+        JsonToken token = parser.nextToken();
+        if (skipStart)
+            token = parser.nextToken();
+        delegate = parser;
+        return token;
+    }
+}
@@ -26,76 +26,288 @@ package io.pengyuc.jackson.versioning;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
-import com.google.common.base.Joiner;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
-
-import java.util.List;
+import com.google.common.primitives.Ints;
 
 /**
  * Version class that can be compared. Can take multiple version numbers as sub-versions.
  * Each subversion is separated by "." and shall be positive integers.
  * ex: "10.1.2.3"
+ * Omitted sub-versions count as zero, so "1", "1.0" and "1.0.0" are equal; the string form keeps the sub-versions
+ * as they were given.
+ * Versions are immutable and can be shared between threads and used as keys.
  */
-public class Version implements Comparable<Version> {
+public final class Version implements Comparable<Version> {
     public static final String JsonVersionConfigDeserializing = "io.pengyuc.jackson.versioning.json_version_deserializing";
     public static final String JsonVersionConfigSerializing = "io.pengyuc.jackson.versioning.json_version_serializing";
+    /**
+     * Attribute that makes a reader skip the json properties that are not in their version instead of failing,
+     * true or false; it overrides {@link JsonVersioningModule#setLenientDeserializing}
+     */
+    public static final String JsonVersionConfigLenient = "io.pengyuc.jackson.versioning.lenient_deserializing";
+    /**
+     * Attribute that tells whether the versioning exceptions of a reader or writer capture their stack traces,
+     * true or false; it overrides {@link JsonVersioningModule#setRejectionStackTraces}
+     */
+    public static final String JsonVersionConfigRejectionStackTraces =
+            "io.pengyuc.jackson.versioning.rejection_stack_traces";
+
+    /** Longest version string accepted. Longer strings are rejected before anything is allocated. */
+    public static final int MAX_VERSION_STRING_LENGTH = 64;
+    /** Most sub-versions accepted in a version string */
+    public static final int MAX_SUB_VERSIONS = 16;
+
+    // Sub-versions that fit in PACKED_BITS each are packed into a single long, so they compare as one number
+    private static final int PACKED_BITS = 15;
+    private static final int PACKED_SUB_VERSIONS = 4;
+    private static final long NOT_PACKED = -1;
 
-    private List<Integer> versionNumbers;
+    private final int[] versionNumbers;
+    // Number of sub-versions without the trailing zeros
+    private final int significantLength;
+    private final long packed;
+    private final int hashCode;
+    private final String versionStr;
+    // The quoted and encoded string form, built when the version is first written
+    private volatile SerializedString serializedString;
 
+    /**
+     * Parse the version string. Versions that were parsed before are returned from a bounded cache,
+     * so the same instance is usually returned for the same string.
+     */
     @JsonCreator
     public static Version fromString(String versionStr) {
         Preconditions.checkArgument(!Strings.isNullOrEmpty(versionStr));
-        Preconditions.checkArgument(!versionStr.startsWith("."), "Version string must not start with dot: {}", versionStr);
-
-        List<String> subVersionStrs = Splitter.on(".").omitEmptyStrings().trimResults().splitToList(versionStr);
-        List<Integer> subVersionNumbers = Lists.newArrayListWithExpectedSize(subVersionStrs.size());
-        for (String subVersionStr : subVersionStrs) {
-            Integer integer = Integer.valueOf(subVersionStr);
-            if (integer < 0)
-                throw new IllegalArgumentException("Input string value cannot be negative: " + subVersionStr);
-            subVersionNumbers.add(integer);
+        checkLength(versionStr.length());
+        Version version = VersionCache.get(versionStr);
+        if (version == null) {
+            version = VersionCache.put(versionStr, parse(versionStr, null, 0, versionStr.length(), false));
+        }
+        return version;
+    }
+
+    /**
+     * Parse the version string in the given range of characters, ex: the text buffer of a JsonParser.
+     * No string is created when the version is found in the cache.
+     */
+    public static Version fromChars(char[] chars, int offset, int length) {
+        Preconditions.checkArgument(length > 0);
+        checkLength(length);
+        Version version = VersionCache.get(chars, offset, length);
+        if (version == null) {
+            version = VersionCache.put(new String(chars, offset, length), parse(null, chars, offset, length, false));
         }
-        if (subVersionNumbers.size() == 0) {
-            throw new IllegalArgumentException("Cannot convert the version correctly: "+versionStr);
+        return version;
+    }
+
+    /**
+     * Parses the version string like {@link #fromString}, but returns null rather than throwing when it is not a
+     * valid version, so that rejecting a bad version costs no exception
+     */
+    static Version tryFromString(String versionStr) {
+        if (Strings.isNullOrEmpty(versionStr) || versionStr.length() > MAX_VERSION_STRING_LENGTH)
+            return null;
+        Version version = VersionCache.get(versionStr);
+        if (version == null) {
+            version = parse(versionStr, null, 0, versionStr.length(), true);
+            if (version != null)
+                version = VersionCache.put(versionStr, version);
+        }
+        return version;
+    }
+
+    /**
+     * Parses the version in the range of characters like {@link #fromChars}, but returns null rather than throwing
+     * when it is not a valid version
+     */
+    static Version tryFromChars(char[] chars, int offset, int length) {
+        if (length <= 0 || length > MAX_VERSION_STRING_LENGTH)
+            return null;
+        Version version = VersionCache.get(chars, offset, length);
+        if (version == null) {
+            version = parse(null, chars, offset, length, true);
+            if (version != null)
+                version = VersionCache.put(new String(chars, offset, length), version);
         }
-        return new Version(subVersionNumbers);
+        return version;
     }
 
-    private Version(List<Integer> versionNumbers) {
+    private static void checkLength(int length) {
+        if (length > MAX_VERSION_STRING_LENGTH)
+            throw new IllegalArgumentException("Version string is longer than " + MAX_VERSION_STRING_LENGTH + " characters");
+    }
+
+    /**
+     * Reads the version from either the string or the character range. Sub-versions are trimmed and empty
+     * sub-versions are omitted, ex: "1..2. 3." is "1.2.3".
+     *
+     * @param quiet whether null is returned rather than an exception thrown if the version is not valid
+     */
+    private static Version parse(String str, char[] chars, int offset, int length, boolean quiet) {
+        if (charAt(str, chars, offset, 0) == '.') {
+            if (quiet)
+                return null;
+            throw new IllegalArgumentException("Version string must not start with dot: " + text(str, chars, offset, length));
+        }
+
+        // First pass validates and counts the sub-versions, so that only the result is allocated
+        int count = parseSubVersions(str, chars, offset, length, null, quiet);
+        if (count <= 0 || count > MAX_SUB_VERSIONS) {
+            if (quiet)
+                return null;
+            if (count == 0)
+                throw new IllegalArgumentException("Cannot convert the version correctly: " + text(str, chars, offset, length));
+            throw new IllegalArgumentException("Version string has more than " + MAX_SUB_VERSIONS + " sub-versions");
+        }
+        int[] versionNumbers = new int[count];
+        parseSubVersions(str, chars, offset, length, versionNumbers, quiet);
+        return new Version(versionNumbers);
+    }
+
+    /**
+     * @param versionNumbers the sub-versions are stored here if not null
+     * @return the number of sub-versions, or -1 if one of them is not valid, when quiet
+     */
+    private static int parseSubVersions(String str, char[] chars, int offset, int length, int[] versionNumbers,
+                                        boolean quiet) {
+        int count = 0;
+        int i = 0;
+        while (i < length) {
+            int end = i;
+            while (end < length && charAt(str, chars, offset, end) != '.')
+                end++;
+            int start = i;
+            while (start < end && Character.isWhitespace(charAt(str, chars, offset, start)))
+                start++;
+            int last = end;
+            while (last > start && Character.isWhitespace(charAt(str, chars, offset, last - 1)))
+                last--;
+            if (start < last) {
+                if (versionNumbers == null && count == MAX_SUB_VERSIONS)
+                    return count + 1;
+                int number = parseSubVersion(str, chars, offset, start, last, quiet);
+                if (number < 0)
+                    return -1;
+                if (versionNumbers != null)
+                    versionNumbers[count] = number;
+                count++;
+            }
+            i = end + 1;
+        }
+        return count;
+    }
+
+    /**
+     * @return the sub-version, or -1 if it is not valid, when quiet
+     */
+    private static int parseSubVersion(String str, char[] chars, int offset, int start, int end, boolean quiet) {
+        if (charAt(str, chars, offset, start) == '-') {
+            if (quiet)
+                return -1;
+            throw new IllegalArgumentException("Input string value cannot be negative: " + text(str, chars, offset + start, end - start));
+        }
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            int digit = charAt(str, chars, offset, i) - '0';
+            if (digit < 0 || digit > 9 || number > (Integer.MAX_VALUE - digit) / 10) {
+                if (quiet)
+                    return -1;
+                throw new NumberFormatException("For input string: \"" + text(str, chars, offset + start, end - start) + "\"");
+            }
+            number = number * 10 + digit;
+        }
+        return number;
+    }
+
+    private static char charAt(String str, char[] chars, int offset, int index) {
+        return str != null ? str.charAt(index) : chars[offset + index];
+    }
+
+    private static String text(String str, char[] chars, int offset, int length) {
+        return str != null ? str.substring(offset, offset + length) : new String(chars, offset, length);
+    }
+
+    private Version(int[] versionNumbers) {
         this.versionNumbers = versionNumbers;
+
+        int length = versionNumbers.length;
+        while (length > 0 && versionNumbers[length - 1] == 0)
+            length--;
+        this.significantLength = length;
+
+        long packedNumbers = 0;
+        int hash = 1;
+        for (int i = 0; i < PACKED_SUB_VERSIONS; i++) {
+            int number = i < length ? versionNumbers[i] : 0;
+            if (number >>> PACKED_BITS != 0) {
+                packedNumbers = NOT_PACKED;
+                break;
+            }
+            packedNumbers = (packedNumbers << PACKED_BITS) | number;
+        }
+        if (length > PACKED_SUB_VERSIONS)
+            packedNumbers = NOT_PACKED;
+        for (int i = 0; i < length; i++)
+            hash = 31 * hash + versionNumbers[i];
+        this.packed = packedNumbers;
+        this.hashCode = hash;
+        this.versionStr = Ints.join(".", versionNumbers);
     }
 
     public int compareTo(Version other) {
-        int minLength = Math.min(versionNumbers.size(), other.versionNumbers.size());
+        if (packed != NOT_PACKED && other.packed != NOT_PACKED)
+            return Long.compare(packed, other.packed);
 
-        int i=0;
-        for (; i < minLength; i++) {
-            int compare = versionNumbers.get(i).compareTo(other.versionNumbers.get(i));
+        // Omitted sub-versions count as zero
+        int length = Math.max(significantLength, other.significantLength);
+        for (int i = 0; i < length; i++) {
+            int compare = Ints.compare(
+                    i < significantLength ? versionNumbers[i] : 0,
+                    i < other.significantLength ? other.versionNumbers[i] : 0);
             if (compare != 0)
                 return compare;
         }
-        final Integer ZERO = 0;
-        if (versionNumbers.size() > minLength) {
-            for (; i < versionNumbers.size();  i++)  {
-                int compare = versionNumbers.get(i).compareTo(ZERO);
-                if (compare != 0)
-                    return compare;
-            }
-        } else if (other.versionNumbers.size() > minLength) {
-            for (; i < other.versionNumbers.size();  i++)  {
-                int compare = ZERO.compareTo(other.versionNumbers.get(i));
-                if (compare != 0)
-                    return compare;
-            }
-        }
         return 0;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof Version))
+            return false;
+        Version other = (Version) obj;
+        if (packed != NOT_PACKED || other.packed != NOT_PACKED)
+            return packed == other.packed;
+        return hashCode == other.hashCode && compareTo(other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
     @JsonValue
     public String toString() {
-        return Joiner.on(".").join(versionNumbers);
+        return versionStr;
+    }
+
+    /**
+     * The string form of this version, already quoted and encoded, so that it can be written with
+     * {@link com.fasterxml.jackson.core.JsonGenerator#writeString(SerializableString)} without building a new string.
+     */
+    public SerializableString toSerializableString() {
+        SerializedString serialized = serializedString;
+        if (serialized == null) {
+            // Racing threads build equal strings, so it does not matter whose copy is kept
+            serialized = new SerializedString(versionStr);
+            serialized.asQuotedUTF8();
+            serialized.asQuotedChars();
+            serializedString = serialized;
+        }
+        return serialized;
     }
 }
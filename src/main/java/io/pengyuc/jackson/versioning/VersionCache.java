@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+/**
+ * Bounded cache of parsed versions by their version strings.
+ * Each string maps to one slot of a fixed size table, so the cache never grows and a colliding string simply
+ * replaces the older entry. The table is read and written without locks; entries are immutable and the worst
+ * case of a race is a version being parsed twice.
+ */
+final class VersionCache {
+    private static final int SIZE = 1024;
+
+    private static final Entry[] entries = new Entry[SIZE];
+
+    private VersionCache() {
+    }
+
+    static Version get(String versionStr) {
+        Entry entry = entries[slot(versionStr.hashCode())];
+        return entry != null && entry.versionStr.equals(versionStr) ? entry.version : null;
+    }
+
+    static Version get(char[] chars, int offset, int length) {
+        // Same hash as String.hashCode(), so both lookups find the same entries
+        int hash = 0;
+        for (int i = 0; i < length; i++)
+            hash = 31 * hash + chars[offset + i];
+        Entry entry = entries[slot(hash)];
+        return entry != null && entry.matches(chars, offset, length) ? entry.version : null;
+    }
+
+    /**
+     * Caches the version for the string. If the version was cached under its canonical string,
+     * ex: "1.2" for "1..2", that instance is returned and cached for this string as well.
+     * @return the cached instance
+     */
+    static Version put(String versionStr, Version version) {
+        String canonicalStr = version.toString();
+        if (!canonicalStr.equals(versionStr)) {
+            Version canonical = get(canonicalStr);
+            if (canonical != null)
+                version = canonical;
+            else
+                entries[slot(canonicalStr.hashCode())] = new Entry(canonicalStr, version);
+        }
+        entries[slot(versionStr.hashCode())] = new Entry(versionStr, version);
+        return version;
+    }
+
+    private static int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & (SIZE - 1);
+    }
+
+    private static final class Entry {
+        private final String versionStr;
+        private final Version version;
+
+        Entry(String versionStr, Version version) {
+            this.versionStr = versionStr;
+            this.version = version;
+        }
+
+        boolean matches(char[] chars, int offset, int length) {
+            if (versionStr.length() != length)
+                return false;
+            for (int i = 0; i < length; i++) {
+                if (versionStr.charAt(i) != chars[offset + i])
+                    return false;
+            }
+            return true;
+        }
+    }
+}
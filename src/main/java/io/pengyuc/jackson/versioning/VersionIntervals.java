@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * Splits the version line at the versions where the properties of a model change, ex: the versions given in the
+ * {@link io.pengyuc.jackson.versioning.annotations.JsonSince} and
+ * {@link io.pengyuc.jackson.versioning.annotations.JsonUntil} annotations.
+ * All versions in the same interval see the same properties, so anything derived for one version of an interval
+ * can be cached and reused for the whole interval. The number of intervals only depends on the model,
+ * not on how many different versions are requested.
+ */
+final class VersionIntervals {
+    private static final Version LOWEST_VERSION = Version.fromString("0");
+
+    private final Version[] boundaries;
+
+    /** Intervals split at the since and until versions of the ranges */
+    static VersionIntervals of(Iterable<VersionRange> ranges) {
+        List<Version> boundaries = Lists.newArrayList();
+        for (VersionRange range : ranges) {
+            if (range.getSinceVersion() != null)
+                boundaries.add(range.getSinceVersion());
+            if (range.getUntilVersion() != null)
+                boundaries.add(range.getUntilVersion());
+        }
+        return new VersionIntervals(boundaries);
+    }
+
+    VersionIntervals(Collection<Version> boundaries) {
+        SortedSet<Version> sortedBoundaries = Sets.newTreeSet(boundaries);
+        this.boundaries = sortedBoundaries.toArray(new Version[sortedBoundaries.size()]);
+    }
+
+    /** Number of intervals. There is always one more interval than boundaries. */
+    int size() {
+        return boundaries.length + 1;
+    }
+
+    /** Index of the interval that contains the version */
+    int indexOf(Version version) {
+        int index = Arrays.binarySearch(boundaries, version);
+        // A version that equals a boundary is the first version of the interval starting at that boundary
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /** The lowest version in the interval, which can stand in for any version of the interval */
+    Version lowerBound(int index) {
+        return index == 0 ? LOWEST_VERSION : boundaries[index - 1];
+    }
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import io.pengyuc.jackson.versioning.annotations.JsonSince;
+import io.pengyuc.jackson.versioning.annotations.JsonUntil;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * The versions in which a property is present, compiled from its {@link JsonSince} and {@link JsonUntil} annotations.
+ * If the since version is smaller than or equal to the until version, the property is present from the since version
+ * (inclusive) to the until version (exclusive). Otherwise the property is present before the until version and again
+ * from the since version on.
+ * Instances are immutable, so they can be built once per property and shared by all serializing and deserializing calls.
+ */
+public final class VersionRange {
+    /** The range of a property without versioning annotations */
+    public static final VersionRange ALL = new VersionRange(null, null);
+
+    private final Version sinceVersion;
+    private final Version untilVersion;
+    // since and until form a valid zone
+    private final boolean bounded;
+
+    private VersionRange(Version sinceVersion, Version untilVersion) {
+        this.sinceVersion = sinceVersion;
+        this.untilVersion = untilVersion;
+        this.bounded = sinceVersion != null && untilVersion != null && sinceVersion.compareTo(untilVersion) <= 0;
+    }
+
+    public static VersionRange of(Version sinceVersion, Version untilVersion) {
+        if (sinceVersion == null && untilVersion == null)
+            return ALL;
+        return new VersionRange(sinceVersion, untilVersion);
+    }
+
+    public static VersionRange of(JsonSince since, JsonUntil until) {
+        return of(since == null ? null : Version.fromString(since.value()),
+                until == null ? null : Version.fromString(until.value()));
+    }
+
+    public static VersionRange forProperty(BeanProperty property) {
+        return of(property.getAnnotation(JsonSince.class), property.getAnnotation(JsonUntil.class));
+    }
+
+    public static VersionRange forPropertyDef(BeanPropertyDefinition property) {
+        return of(getAnnotation(property, JsonSince.class), getAnnotation(property, JsonUntil.class));
+    }
+
+    private static <A extends Annotation> A getAnnotation(BeanPropertyDefinition property, Class<A> acls) {
+        A annoClz = null;
+        if (property.hasGetter()) {
+            annoClz = property.getGetter().getAnnotation(acls);
+        }
+        if (property.hasField() && annoClz == null) {
+            annoClz = property.getField().getAnnotation(acls);
+        }
+        return annoClz;
+    }
+
+    public boolean contains(Version jsonVersion) {
+        if (bounded)
+            return jsonVersion.compareTo(sinceVersion) >= 0 && jsonVersion.compareTo(untilVersion) < 0;
+        if (untilVersion != null && jsonVersion.compareTo(untilVersion) < 0)
+            return true;
+        if (sinceVersion != null && jsonVersion.compareTo(sinceVersion) >= 0)
+            return true;
+        return sinceVersion == null && untilVersion == null;
+    }
+
+    /** @return the version given in {@link JsonSince}, or null */
+    public Version getSinceVersion() {
+        return sinceVersion;
+    }
+
+    /** @return the version given in {@link JsonUntil}, or null */
+    public Version getUntilVersion() {
+        return untilVersion;
+    }
+
+    @Override
+    public String toString() {
+        return "[since " + sinceVersion + ", until " + untilVersion + ")";
+    }
+}
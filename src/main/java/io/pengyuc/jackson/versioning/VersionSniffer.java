@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import io.pengyuc.jackson.versioning.annotations.JsonVersionProperty;
+import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Finds the json version of a versioned object in its raw json, without binding it or building a tree, ex: to route
+ * or rate-limit requests by version before reading them. Only the top-level fields of the object are tokenized, up
+ * to the json version property; the values of the other fields are skipped. Models written with
+ * {@link JsonVersioningModule#setVersionPropertyFirst} have the version in their first field, so only a few dozen
+ * bytes are read.
+ * <p>
+ * At most the prefix length of the json is scanned. The version is not found if it is not within the prefix, if the
+ * json is not an object, or if the object has no json version property; in the last case the deserializer reads the
+ * json in the configured version or the model version.
+ * <pre>
+ * VersionSniffer sniffer = VersionSniffer.forModel(mapper, Car.class);
+ * Version version = sniffer.sniff(body);
+ * </pre>
+ */
+public final class VersionSniffer {
+    public static final int DEFAULT_PREFIX_LENGTH = 4096;
+
+    private final JsonFactory factory;
+    private final Class<?> model;
+    private final String versionProperty;
+    private final int prefixLength;
+
+    private VersionSniffer(JsonFactory factory, Class<?> model, String versionProperty, int prefixLength) {
+        this.factory = factory;
+        this.model = model;
+        this.versionProperty = versionProperty;
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * @param model a versioned model with a json version property
+     */
+    public static VersionSniffer forModel(ObjectMapper mapper, Class<?> model) {
+        DeserializationConfig config = mapper.getDeserializationConfig();
+        BeanDescription beanDesc = config.introspect(config.constructType(model));
+        JsonVersioned jsonVersioned = beanDesc.getClassAnnotations().get(JsonVersioned.class);
+        checkArgument(jsonVersioned != null, "%s is not annotated with @JsonVersioned", model.getName());
+        VersionTable versionTable = VersionTable.forModel(config, beanDesc, Version.fromString(jsonVersioned.value()));
+
+        for (BeanPropertyDefinition propertyDef: beanDesc.findProperties()) {
+            if (versionTable != null ? versionTable.isVersionProperty(propertyDef)
+                    : ((propertyDef.hasGetter() && propertyDef.getGetter().hasAnnotation(JsonVersionProperty.class))
+                    || (propertyDef.hasField() && propertyDef.getField().hasAnnotation(JsonVersionProperty.class)))) {
+                return new VersionSniffer(mapper.getFactory(), model, propertyDef.getName(), DEFAULT_PREFIX_LENGTH);
+            }
+        }
+        throw new IllegalArgumentException(model.getName() + " has no json version property");
+    }
+
+    /**
+     * @param prefixLength the number of bytes of the json scanned for the version
+     */
+    public VersionSniffer withPrefixLength(int prefixLength) {
+        checkArgument(prefixLength > 0);
+        return new VersionSniffer(factory, model, versionProperty, prefixLength);
+    }
+
+    /**
+     * @return the json name of the version property looked for
+     */
+    public String getVersionProperty() {
+        return versionProperty;
+    }
+
+    /**
+     * @return the json version, or null if it is not found
+     * @throws JsonVersioningException if the json version is not valid
+     * @throws IOException if the scanned json is malformed
+     */
+    public Version sniff(byte[] src) throws IOException {
+        return sniff(src, 0, src.length);
+    }
+
+    public Version sniff(byte[] src, int offset, int length) throws IOException {
+        checkNotNull(src);
+        final boolean truncated = length > prefixLength;
+        return sniff(factory.createParser(src, offset, truncated ? prefixLength : length), truncated);
+    }
+
+    /**
+     * @return the json version in the remaining bytes of the buffer, or null if it is not found; the position of the
+     * buffer is left as it is
+     */
+    public Version sniff(ByteBuffer src) throws IOException {
+        if (src.hasArray())
+            return sniff(src.array(), src.arrayOffset() + src.position(), src.remaining());
+        final boolean truncated = src.remaining() > prefixLength;
+        final byte[] prefix = new byte[truncated ? prefixLength : src.remaining()];
+        src.duplicate().get(prefix);
+        return sniff(factory.createParser(prefix), truncated);
+    }
+
+    /**
+     * Reads the prefix of the stream. The stream is reset to where it was if it supports marks, so that the json can
+     * then be read from it; otherwise the bytes read are consumed.
+     *
+     * @return the json version, or null if it is not found
+     */
+    public Version sniff(InputStream src) throws IOException {
+        final byte[] prefix = new byte[prefixLength];
+        final boolean marked = src.markSupported();
+        if (marked)
+            src.mark(prefixLength);
+        int length = 0;
+        try {
+            for (int read; length < prefix.length && (read = src.read(prefix, length, prefix.length - length)) >= 0; )
+                length += read;
+        } finally {
+            if (marked)
+                src.reset();
+        }
+        // A full prefix may be cut short of the rest of the json
+        return sniff(factory.createParser(prefix, 0, length), length == prefixLength);
+    }
+
+    /**
+     * @param truncated whether the parser reads a prefix of the json, so that running out of input means the version
+     *                  is not within the prefix
+     */
+    private Version sniff(JsonParser parser, boolean truncated) throws IOException {
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                return null;
+            for (JsonToken token = parser.nextToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                final boolean found = versionProperty.equals(parser.getCurrentName());
+                token = parser.nextToken();
+                if (found) {
+                    // A number that ends the prefix may be cut short, ex: 1.25 read as 1.2; strings end with a quote
+                    if (truncated && token.isNumeric() && parser.getCurrentLocation().getByteOffset() >= prefixLength)
+                        return null;
+                    return readVersion(parser, token);
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (JsonEOFException e) {
+            if (truncated)
+                return null;
+            throw e;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private Version readVersion(JsonParser parser, JsonToken token) throws IOException {
+        // Same as the deserializer; strings are parsed straight from the parser's text buffer
+        final Version jsonVersion = token == JsonToken.VALUE_STRING
+                ? Version.tryFromChars(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())
+                : Version.tryFromString(parser.getText());
+        if (jsonVersion == null) {
+            // Routing code rejects bad versions by the thousand, so no stack trace is captured
+            throw JsonVersioningException.invalidVersion(parser, model, parser.getText(), false);
+        }
+        return jsonVersion;
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.BeanDeserializer;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBase;
+import com.fasterxml.jackson.databind.deser.impl.BeanPropertyMap;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Bean deserializer for one json version: its property map holds only the properties in that version, so the
+ * properties that are not in the version are unknown to it and rejected, or skipped in lenient mode, when they are
+ * met. The json is then bound by the plain bean deserializer loop without any version checks.
+ * It is built and cached by {@link JsonVersioningDeserializer}, which dispatches to it at runtime; it is never handed
+ * to Jackson, so it cannot be contextualized.
+ */
+final class VersionSpecificDeserializer extends BeanDeserializer {
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, VersionRange> propertiesNotInVersion;
+    private final Version jsonVersion;
+    private final JsonVersioningListener listener;
+    private final boolean lenientByDefault;
+    private final boolean rejectionStackTraces;
+
+    VersionSpecificDeserializer(BeanDeserializerBase src, BeanPropertyMap properties,
+                                Map<String, VersionRange> propertiesNotInVersion, Version jsonVersion,
+                                JsonVersioningListener listener, boolean lenientByDefault,
+                                boolean rejectionStackTraces) {
+        super(src, properties);
+        this.propertiesNotInVersion = propertiesNotInVersion;
+        this.jsonVersion = jsonVersion;
+        this.listener = listener;
+        this.lenientByDefault = lenientByDefault;
+        this.rejectionStackTraces = rejectionStackTraces;
+    }
+
+    Version getJsonVersion() {
+        return jsonVersion;
+    }
+
+    @Override
+    protected void handleUnknownVanilla(JsonParser p, DeserializationContext ctx, Object bean, String propName)
+            throws IOException {
+        if (checkInVersion(propName, ctx))
+            super.handleUnknownVanilla(p, ctx, bean, propName);
+        else
+            p.skipChildren();
+    }
+
+    @Override
+    protected void handleUnknownProperty(JsonParser p, DeserializationContext ctx, Object beanOrClass, String propName)
+            throws IOException {
+        // Checked ahead of the ignored and ignore-unknown properties, which would otherwise skip the property
+        if (checkInVersion(propName, ctx))
+            super.handleUnknownProperty(p, ctx, beanOrClass, propName);
+        else
+            p.skipChildren();
+    }
+
+    /**
+     * @return false if the property is not in the version and is to be skipped, in lenient mode
+     */
+    private boolean checkInVersion(String propName, DeserializationContext ctx) throws IOException {
+        if (!propertiesNotInVersion.containsKey(propName))
+            return true;
+        if (JsonVersioningDeserializer.isLenient(ctx, lenientByDefault))
+            return false;
+        listener.onRejected(handledType(), jsonVersion, JsonVersioningListener.Rejection.PROPERTY_NOT_IN_VERSION);
+        throw JsonVersioningException.propertyNotInVersion(ctx.getParser(), handledType(), propName, jsonVersion,
+                JsonVersioningDeserializer.capturesStackTrace(ctx, rejectionStackTraces));
+    }
+}
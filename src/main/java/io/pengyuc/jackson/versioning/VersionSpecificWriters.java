@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+
+import java.io.IOException;
+
+/**
+ * The property writers of one json version, which {@link JsonVersioningSerializer} writes the fields of its beans with.
+ * The writers of the properties in the version are the ones of its version interval, which all the versions in the
+ * interval share; only the writer of the json version property, which writes the version as a constant, is specific to
+ * the version. Versions that are not cached thus only cost their version property writer.
+ */
+final class VersionSpecificWriters {
+    private final Version jsonVersion;
+    private final IntervalProperties properties;
+    private final IntervalProperties filteredProperties;
+    private final BeanPropertyWriter versionWriter;
+    private final BeanPropertyWriter filteredVersionWriter;
+
+    /**
+     * @param filteredProperties the properties of the interval for views, or null if the bean has no view
+     */
+    VersionSpecificWriters(Version jsonVersion, IntervalProperties properties, IntervalProperties filteredProperties) {
+        this.jsonVersion = jsonVersion;
+        this.properties = properties;
+        this.filteredProperties = filteredProperties;
+        this.versionWriter = properties.versionWriter(jsonVersion);
+        this.filteredVersionWriter = filteredProperties == null ? null : filteredProperties.versionWriter(jsonVersion);
+    }
+
+    Version getJsonVersion() {
+        return jsonVersion;
+    }
+
+    /**
+     * @return the writers of the properties in the version, in writing order, with the writer of the bean's json
+     * version property at {@link #getVersionPropertyIndex}
+     */
+    BeanPropertyWriter[] getProperties(boolean filtered) {
+        return (filtered ? filteredProperties : properties).writers;
+    }
+
+    /**
+     * @return the index of the json version property in {@link #getProperties}, or -1 if it is not written
+     */
+    int getVersionPropertyIndex(boolean filtered) {
+        return (filtered ? filteredProperties : properties).versionPropertyIndex;
+    }
+
+    /**
+     * @return the writer that writes the json version as the json version property, or null if it is not written
+     */
+    BeanPropertyWriter getVersionWriter(boolean filtered) {
+        return filtered ? filteredVersionWriter : versionWriter;
+    }
+
+    /**
+     * @return the writer of the property at the index in the properties of the model, or null if it is not written
+     * in the version
+     */
+    BeanPropertyWriter getPropertyAt(int index, boolean filtered) {
+        final IntervalProperties intervalProperties = filtered ? filteredProperties : properties;
+        final BeanPropertyWriter property = intervalProperties.propertiesByIndex[index];
+        if (property != null && intervalProperties.versionPropertyIndex >= 0
+                && property == intervalProperties.writers[intervalProperties.versionPropertyIndex])
+            return getVersionWriter(filtered);
+        return property;
+    }
+
+    /**
+     * The non-null property writers of a version interval, in writing order
+     */
+    static final class IntervalProperties {
+        private final BeanPropertyWriter[] writers;
+        // The writers by their index in the properties of the model, null where not in the interval
+        private final BeanPropertyWriter[] propertiesByIndex;
+        // Index of the json version property writer in writers, or -1
+        private final int versionPropertyIndex;
+
+        /**
+         * @param indexes the index of each of the writers in the properties of the model
+         * @param propertyCount the number of properties of the model
+         */
+        IntervalProperties(BeanPropertyWriter[] writers, int[] indexes, int versionPropertyIndex, int propertyCount) {
+            this.writers = writers;
+            this.versionPropertyIndex = versionPropertyIndex;
+            propertiesByIndex = new BeanPropertyWriter[propertyCount];
+            for (int i = 0; i < writers.length; i++)
+                propertiesByIndex[indexes[i]] = writers[i];
+        }
+
+        private BeanPropertyWriter versionWriter(Version jsonVersion) {
+            return versionPropertyIndex < 0 ? null : new ConstantVersionWriter(writers[versionPropertyIndex], jsonVersion);
+        }
+    }
+
+    /**
+     * Writer of the json version property that writes the version it was built for, instead of the bean's value
+     */
+    static final class ConstantVersionWriter extends BeanPropertyWriter {
+        private static final long serialVersionUID = 1L;
+
+        private final Version jsonVersion;
+
+        ConstantVersionWriter(BeanPropertyWriter base, Version jsonVersion) {
+            super(base);
+            this.jsonVersion = jsonVersion;
+        }
+
+        @Override
+        public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws IOException {
+            gen.writeFieldName(_name);
+            gen.writeString(jsonVersion.toSerializableString());
+        }
+    }
+}
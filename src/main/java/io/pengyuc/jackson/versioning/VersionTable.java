@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The versioning metadata of a model, written at build time by the annotation processor of the jackson-versioning
+ * processor module, so that the annotations of the model do not have to be looked up and their versions validated
+ * when its serializer or deserializer is built.
+ * <p>
+ * The table of a model is the properties resource {@code META-INF/jackson-versioning/<class name>.versions}:
+ * <pre>
+ * model=1.0
+ * properties.hash=4d2e6a1b
+ * field.deprecatedAt08.until=0.8
+ * method.getCapacity.0.until=0.9
+ * field.version.versionProperty=true
+ * converter.0=io.pengyuc.jackson.versioning.models.ModelPojo#renameTitle#
+ * converter.0.until=0.5
+ * </pre>
+ * The members are the fields, and the methods by name and number of parameters, of the model and its super types
+ * that have versioning annotations. A converter names the class that declares it, the method and its parameter type,
+ * empty for a migration. Like the annotations, the versions of a property are looked up on its getter, then its
+ * field, then its setter when serializing.
+ * <p>
+ * The properties hash is the hash of the sorted names of the bean properties of the model joined by commas, as
+ * {@link String#hashCode} in hex. The processor finds the properties with the default visibility of jackson, so
+ * models whose mapper finds other properties, ex: with a naming strategy, use their annotations.
+ */
+final class VersionTable {
+    static final String RESOURCE_PREFIX = "META-INF/jackson-versioning/";
+    static final String RESOURCE_SUFFIX = ".versions";
+
+    private static final Splitter CONVERTER_SPLITTER = Splitter.on('#');
+    private static final Joiner PROPERTY_JOINER = Joiner.on(',');
+
+    private final Version modelVersion;
+    private final String propertiesHash;
+    private final Map<String, Version> sinceByMember;
+    private final Map<String, Version> untilByMember;
+    private final Set<String> versionPropertyMembers;
+    private final List<ConverterEntry> converters;
+
+    private VersionTable(Properties table) {
+        String model = table.getProperty("model");
+        checkArgument(model != null, "Version table without a model version");
+        modelVersion = Version.fromString(model);
+        propertiesHash = table.getProperty("properties.hash");
+
+        ImmutableMap.Builder<String, Version> since = ImmutableMap.builder();
+        ImmutableMap.Builder<String, Version> until = ImmutableMap.builder();
+        ImmutableSet.Builder<String> versionProperties = ImmutableSet.builder();
+        for (String key : table.stringPropertyNames()) {
+            if (!key.startsWith("field.") && !key.startsWith("method."))
+                continue;
+            String member = key.substring(0, key.lastIndexOf('.'));
+            if (key.endsWith(".since"))
+                since.put(member, Version.fromString(table.getProperty(key)));
+            else if (key.endsWith(".until"))
+                until.put(member, Version.fromString(table.getProperty(key)));
+            else if (key.endsWith(".versionProperty") && Boolean.parseBoolean(table.getProperty(key)))
+                versionProperties.add(member);
+        }
+        sinceByMember = since.build();
+        untilByMember = until.build();
+        versionPropertyMembers = versionProperties.build();
+
+        List<ConverterEntry> converterEntries = Lists.newArrayList();
+        for (int i = 0; table.getProperty("converter." + i) != null; i++) {
+            List<String> parts = CONVERTER_SPLITTER.splitToList(table.getProperty("converter." + i));
+            checkArgument(parts.size() == 3, "Malformed converter in version table: %s", parts);
+            String sinceStr = table.getProperty("converter." + i + ".since");
+            String untilStr = table.getProperty("converter." + i + ".until");
+            converterEntries.add(new ConverterEntry(parts.get(0), parts.get(1),
+                    parts.get(2).isEmpty() ? null : parts.get(2),
+                    VersionRange.of(sinceStr == null ? null : Version.fromString(sinceStr),
+                            untilStr == null ? null : Version.fromString(untilStr))));
+        }
+        converters = ImmutableList.copyOf(converterEntries);
+    }
+
+    /**
+     * @return the table of the model, or null if it has none, or if the table may not match its annotations: the
+     * model version or its bean properties differ, or the model has mix-ins, which the processor cannot see
+     */
+    static VersionTable forModel(MapperConfig<?> config, BeanDescription beanDesc, Version modelVersion) {
+        Class<?> beanClass = beanDesc.getBeanClass();
+        for (Class<?> cls = beanClass; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            if (config.findMixInClassFor(cls) != null)
+                return null;
+            for (Class<?> iface : cls.getInterfaces()) {
+                if (config.findMixInClassFor(iface) != null)
+                    return null;
+            }
+        }
+        VersionTable table = forType(beanClass);
+        if (table == null || !table.modelVersion.equals(modelVersion))
+            return null;
+        return propertiesHash(beanDesc).equals(table.propertiesHash) ? table : null;
+    }
+
+    /**
+     * @return the hash of the names of the bean properties, as written by the processor
+     */
+    static String propertiesHash(BeanDescription beanDesc) {
+        Set<String> names = Sets.newTreeSet();
+        for (BeanPropertyDefinition property : beanDesc.findProperties())
+            names.add(property.getName());
+        return Integer.toHexString(PROPERTY_JOINER.join(names).hashCode());
+    }
+
+    /**
+     * @return the table of the type, or null if it has none
+     */
+    static VersionTable forType(Class<?> type) {
+        ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null)
+            return null;
+        InputStream in = classLoader.getResourceAsStream(RESOURCE_PREFIX + type.getName() + RESOURCE_SUFFIX);
+        if (in == null)
+            return null;
+        try {
+            try {
+                Properties table = new Properties();
+                table.load(in);
+                return new VersionTable(table);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to read the version table of " + type.getName(), e);
+        }
+    }
+
+    static String fieldKey(String name) {
+        return "field." + name;
+    }
+
+    static String methodKey(String name, int parameterCount) {
+        return "method." + name + "." + parameterCount;
+    }
+
+    Version getModelVersion() {
+        return modelVersion;
+    }
+
+    /**
+     * @return the versions the property is in, from its getter, its field and, when serializing, its setter
+     */
+    VersionRange rangeOf(BeanPropertyDefinition property, boolean forSerialization) {
+        List<String> members = membersOf(property, forSerialization);
+        return VersionRange.of(find(sinceByMember, members), find(untilByMember, members));
+    }
+
+    boolean isVersionProperty(BeanPropertyDefinition property) {
+        for (String member : membersOf(property, false)) {
+            if (versionPropertyMembers.contains(member))
+                return true;
+        }
+        return false;
+    }
+
+    List<ConverterEntry> getConverters() {
+        return converters;
+    }
+
+    private static Version find(Map<String, Version> versionByMember, List<String> members) {
+        for (String member : members) {
+            Version version = versionByMember.get(member);
+            if (version != null)
+                return version;
+        }
+        return null;
+    }
+
+    private static List<String> membersOf(BeanPropertyDefinition property, boolean forSerialization) {
+        List<String> members = Lists.newArrayListWithCapacity(3);
+        if (property.hasGetter())
+            members.add(keyOf(property.getGetter()));
+        if (property.hasField())
+            members.add(keyOf(property.getField()));
+        if (forSerialization && property.hasSetter())
+            members.add(keyOf(property.getSetter()));
+        return members;
+    }
+
+    private static String keyOf(AnnotatedMember member) {
+        if (member instanceof AnnotatedMethod)
+            return methodKey(member.getName(), ((AnnotatedMethod) member).getParameterCount());
+        return fieldKey(member.getName());
+    }
+
+    /**
+     * A converter method of the model, as found by the processor
+     */
+    static final class ConverterEntry {
+        final String declaringClassName;
+        final String methodName;
+        // The parameter type of a converter that takes a node, or null for a migration
+        final String parameterTypeName;
+        final VersionRange range;
+
+        ConverterEntry(String declaringClassName, String methodName, String parameterTypeName, VersionRange range) {
+            this.declaringClassName = declaringClassName;
+            this.methodName = methodName;
+            this.parameterTypeName = parameterTypeName;
+            this.range = range;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.DeserializationContext;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Parser delegate that checks the field names of the versioned object against the resolved json version
+ * while the tokens are streamed into the bean deserializer. Only the fields of the object the parser was
+ * created for are checked; the fields of nested objects are left to their own deserializers.
+ * The fields are told apart by their depth rather than by the parsing context, so the object can be
+ * streamed from a sequence of parsers, ex: the buffered fields followed by the rest of the object.
+ * In lenient mode, the fields that are not in the version are skipped, along with their values, instead of rejected;
+ * the deserializer never sees them.
+ */
+final class VersionValidatingParser extends JsonParserDelegate {
+    private final Map<String, VersionRange> propertiesNotInVersion;
+    private final Version jsonVersion;
+    private final JsonVersioningListener listener;
+    private final Class<?> model;
+    private final boolean lenientByDefault;
+    private final boolean rejectionStackTraces;
+    private final DeserializationContext ctx;
+    // Depth of the current token below the fields of the versioned object
+    private int depth;
+    // Set once the end of the versioned object is reached
+    private boolean finished;
+
+    /**
+     * @param parser parser positioned inside the versioned object, at its START_OBJECT or one of its FIELD_NAMEs
+     * @param listener told of the rejected objects of the model
+     * @param lenientByDefault whether the fields not in the version are skipped, unless the context says otherwise
+     * @param rejectionStackTraces whether the rejections capture their stack traces, unless the context says otherwise
+     */
+    VersionValidatingParser(JsonParser parser, Map<String, VersionRange> propertiesNotInVersion, Version jsonVersion,
+                            JsonVersioningListener listener, Class<?> model, boolean lenientByDefault,
+                            boolean rejectionStackTraces, DeserializationContext ctx) throws IOException {
+        super(parser);
+        this.propertiesNotInVersion = propertiesNotInVersion;
+        this.jsonVersion = jsonVersion;
+        this.listener = listener;
+        this.model = model;
+        this.lenientByDefault = lenientByDefault;
+        this.rejectionStackTraces = rejectionStackTraces;
+        this.ctx = ctx;
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.FIELD_NAME && !checkInVersion(parser.getCurrentName()))
+            token = skipField();
+        finished = token == JsonToken.END_OBJECT;
+    }
+
+    @Override
+    public JsonToken nextToken() throws IOException {
+        JsonToken token = delegate.nextToken();
+        if (!finished && depth == 0 && token == JsonToken.FIELD_NAME && !checkInVersion(delegate.getCurrentName()))
+            token = skipField();
+        if (finished || token == null)
+            return token;
+        switch (token) {
+            case START_OBJECT:
+            case START_ARRAY:
+                depth++;
+                break;
+            case END_ARRAY:
+                depth--;
+                break;
+            case END_OBJECT:
+                if (depth-- == 0)
+                    finished = true;
+                break;
+            default:
+                break;
+        }
+        return token;
+    }
+
+    @Override
+    public JsonToken nextValue() throws IOException {
+        // JsonParserDelegate hands nextValue() straight to the delegate, which would bypass the check
+        JsonToken token = nextToken();
+        if (token == JsonToken.FIELD_NAME)
+            token = nextToken();
+        return token;
+    }
+
+    @Override
+    public JsonParser skipChildren() throws IOException {
+        JsonToken token = delegate.getCurrentToken();
+        delegate.skipChildren();
+        if (!finished && (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)) {
+            // At depth 0 it is the START_OBJECT of the versioned object itself
+            if (depth == 0)
+                finished = true;
+            else
+                depth--;
+        }
+        return this;
+    }
+
+    /**
+     * @return the parser whose tokens are being checked
+     */
+    JsonParser getValidatedParser() {
+        return delegate;
+    }
+
+    /**
+     * @return false if the field is not in the version and is to be skipped, in lenient mode
+     */
+    private boolean checkInVersion(String name) throws IOException {
+        if (!propertiesNotInVersion.containsKey(name))
+            return true;
+        if (JsonVersioningDeserializer.isLenient(ctx, lenientByDefault))
+            return false;
+        listener.onRejected(model, jsonVersion, JsonVersioningListener.Rejection.PROPERTY_NOT_IN_VERSION);
+        throw JsonVersioningException.propertyNotInVersion(ctx.getParser(), model, name, jsonVersion,
+                JsonVersioningDeserializer.capturesStackTrace(ctx, rejectionStackTraces));
+    }
+
+    /**
+     * Skips the field the parser is on, its value and the following fields that are not in the version either
+     *
+     * @return the token after them: the next field in the version, or the end of the object
+     */
+    private JsonToken skipField() throws IOException {
+        JsonToken token;
+        do {
+            delegate.nextToken();
+            delegate.skipChildren();
+            token = delegate.nextToken();
+        } while (token == JsonToken.FIELD_NAME && !checkInVersion(delegate.getCurrentName()));
+        return token;
+    }
+}
@@ -27,17 +27,22 @@ package io.pengyuc.jackson.versioning.annotations;
 import java.lang.annotation.*;
 
 /**
- * A converter method that convert the model between versions. This annotation can be used with {@link JsonSince} and
- * {@link JsonUntil} to limit the invocation versions of the JSON.
- * The converter method shall manipulate the JsonNode object in this order:
- * Deserializing:
+ * A converter method that upgrades the JSON of older versions while deserializing. This annotation can be used with
+ * {@link JsonSince} and {@link JsonUntil} to limit the JSON versions the converter is invoked for; the JSON is in the
+ * {@link JsonUntil} version of the converter after it ran.
+ * The converter method shall be static, take a single ObjectNode, and either change the node in place and return
+ * void or return the converted ObjectNode. It is invoked in this order:
  * Input String -> JsonNode -> other versioning annotations; ex: {@link JsonSince} and/or {@link JsonUntil}
  *              -> converter -> versioned JsonNode -> Jackson deserialize into a model instance.
- * Serializing:
- * Model instance -> Jackson deserialize into JsonNode -> other versioning annotations
- *              -> converter -> Jackson serialize into string
  *
- * If there are multiple converter, the order of their execution is not guaranteed.
+ * A converter method may instead take no parameters and return a
+ * {@link io.pengyuc.jackson.versioning.JsonVersionMigration} of renames, drops, insertions and value transforms. It is
+ * invoked once, and the migration is applied to the tokens while they are deserialized, without a JsonNode.
+ * Serializing applies the renames of the migrations in reverse.
+ *
+ * If there are multiple converters, they are executed in the order of their {@link JsonUntil} versions, then their
+ * {@link JsonSince} versions. Converters without {@link JsonUntil} are executed last. Serializing does not invoke
+ * the converters that take an ObjectNode.
  */
 @Target(ElementType.METHOD)
 @Inherited
@@ -71,6 +71,21 @@ public class TestDeserializingWithJsonVersionProperty {
             "}";
 
 
+    private static String JSON_VER_06_VERSION_LAST =
+            "{\n" +
+            "  \"deprecatedAt08\": \"something08\",\n" +
+            "  \"deprecatedAt09\": \"something09\",\n" +
+            "  \"alwaysThereAttribute\": \"alwaysThere\",\n" +
+            "  \"version\": \"0.6\"\n" +
+            "}";
+
+    private static String JSON_VER_08_VERSION_IN_MIDDLE_WITH_OLD_ATTR =
+            "{\n" +
+            "  \"alwaysThereAttribute\": \"alwaysThere\",\n" +
+            "  \"version\": \"0.8\",\n" +
+            "  \"deprecatedAt08\": \"something08\"\n" +
+            "}";
+
     private static String JSON_VER_NOT_SPECIFIED_WITH_OLD_ATTR =
             "{\n" +
             "  \"deprecatedAt08\": \"something08\",\n" +
@@ -138,4 +153,95 @@ public class TestDeserializingWithJsonVersionProperty {
                 .readValue(JSON_VER_09_WITH_OLD_ATTR);
     }
 
+    @Test
+    public void whenJsonVersionPropertyIsAfterOtherProperties_UseJsonVersion() throws IOException {
+        ModelPojoWithVersionProperty pojo = mapper.reader()
+                .forType(ModelPojoWithVersionProperty.class)
+                .readValue(JSON_VER_06_VERSION_LAST.getBytes("UTF-8"));
+
+        Assert.assertEquals("0.6", pojo.getVersion());
+        Assert.assertEquals("something08", pojo.getDeprecatedAt08());
+        Assert.assertEquals("something09", pojo.getDeprecatedAt09());
+        Assert.assertEquals("alwaysThere", pojo.getAlwaysThereAttribute());
+    }
+
+    @Test
+    public void whenJsonVersionPropertyIsFirstInArrayElements_UseEachJsonVersion() throws IOException {
+        ModelPojoWithVersionProperty[] pojos = mapper.reader()
+                .forType(ModelPojoWithVersionProperty[].class)
+                .readValue("[" + JSON_VER_06 + "," + JSON_VER_08 + "]");
+
+        Assert.assertEquals(2, pojos.length);
+        Assert.assertEquals("0.6", pojos[0].getVersion());
+        Assert.assertEquals("something08", pojos[0].getDeprecatedAt08());
+        Assert.assertEquals("0.8", pojos[1].getVersion());
+        Assert.assertNull(pojos[1].getDeprecatedAt08());
+        Assert.assertEquals("something09", pojos[1].getDeprecatedAt09());
+    }
+
+    @Test
+    public void whenReadFromTree_UseJsonVersionAnywhereInTheNode() throws IOException {
+        ModelPojoWithVersionProperty pojo = mapper.treeToValue(
+                mapper.readTree(JSON_VER_06_VERSION_LAST), ModelPojoWithVersionProperty.class);
+
+        Assert.assertEquals("0.6", pojo.getVersion());
+        Assert.assertEquals("something08", pojo.getDeprecatedAt08());
+        Assert.assertEquals("something09", pojo.getDeprecatedAt09());
+        Assert.assertEquals("alwaysThere", pojo.getAlwaysThereAttribute());
+    }
+
+    @Test
+    public void whenReadFromTreeWithoutJsonVersion_UseConfiguredVersion() throws IOException {
+        ModelPojoWithVersionProperty pojo = mapper.reader()
+                .withAttribute(Version.JsonVersionConfigDeserializing, "0.6")
+                .forType(ModelPojoWithVersionProperty.class)
+                .readValue(mapper.readTree(JSON_VER_NOT_SPECIFIED_WITH_OLD_ATTR));
+
+        Assert.assertEquals("0.6", pojo.getVersion());
+        Assert.assertEquals("something08", pojo.getDeprecatedAt08());
+    }
+
+    @Test (expected = JsonMappingException.class)
+    public void whenReadFromTree_FailDeprecatedAttributes() throws IOException {
+        mapper.treeToValue(
+                mapper.readTree(JSON_VER_08_VERSION_IN_MIDDLE_WITH_OLD_ATTR), ModelPojoWithVersionProperty.class);
+    }
+
+    @Test (expected = JsonMappingException.class)
+    public void whenJsonVersionPropertyIsInTheMiddle_FailDeprecatedAttributesAfterIt() throws IOException {
+        mapper.reader()
+                .forType(ModelPojoWithVersionProperty.class)
+                .readValue(JSON_VER_08_VERSION_IN_MIDDLE_WITH_OLD_ATTR);
+    }
+
+    @Test
+    public void whenJsonVersionsAlternate_FailDeprecatedAttributesOfEachVersion() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            ModelPojoWithVersionProperty pojo = mapper.reader()
+                    .forType(ModelPojoWithVersionProperty.class)
+                    .readValue(JSON_VER_06);
+            Assert.assertEquals("something08", pojo.getDeprecatedAt08());
+
+            try {
+                mapper.reader()
+                        .forType(ModelPojoWithVersionProperty.class)
+                        .readValue(JSON_VER_09_WITH_OLD_ATTR);
+                Assert.fail("deprecatedAt08 is not in version 0.9");
+            } catch (JsonMappingException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("\"deprecatedAt08\" is not in version 0.9"));
+            }
+        }
+    }
+
+    @Test
+    public void whenJsonVersionPropertyIsAfterDeprecatedAttributes_ReportDeprecatedAttribute() throws IOException {
+        try {
+            mapper.reader()
+                    .forType(ModelPojoWithVersionProperty.class)
+                    .readValue(JSON_VER_06_VERSION_LAST.replace("0.6", "0.9"));
+            Assert.fail("deprecatedAt08 is not in version 0.9");
+        } catch (JsonMappingException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("\"deprecatedAt08\" is not in version 0.9"));
+        }
+    }
 }
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.pengyuc.jackson.versioning.models.VersionedCar;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Deserializing a model that has no version property, so the version comes from the context or the model
+ */
+public class TestDeserializingWithVersionInContext {
+    private static final ObjectReader reader = new ObjectMapper()
+            .registerModule(new JsonVersioningModule())
+            .readerFor(VersionedCar.class);
+
+    private static String JSON_VER_07 =
+            "{\n" +
+            "  \"capacity\": 7,\n" +
+            "  \"make\": \"Toyota\",\n" +
+            "  \"omittedBetween2to6\": false\n" +
+            "}";
+
+    private static String JSON_VER_10 =
+            "{\n" +
+            "  \"model\": \"Rav4\",\n" +
+            "  \"make\": \"Toyota\",\n" +
+            "  \"omittedBetween2to6\": false\n" +
+            "}";
+
+    @Test
+    public void whenVersionIsConfigured_PropertiesInVersionAreAccepted() throws IOException {
+        VersionedCar car = reader
+                .withAttribute(Version.JsonVersionConfigDeserializing, "0.7")
+                .readValue(JSON_VER_07);
+
+        Assert.assertEquals(Integer.valueOf(7), car.getCapacity());
+        Assert.assertEquals("Toyota", car.getMake());
+        Assert.assertEquals(Boolean.FALSE, car.getOmittedBetween2to6());
+    }
+
+    @Test
+    public void whenVersionIsNotConfigured_UseModelVersion() throws IOException {
+        VersionedCar car = reader.readValue(JSON_VER_10);
+
+        Assert.assertEquals("Rav4", car.getModel());
+        Assert.assertEquals("Toyota", car.getMake());
+    }
+
+    @Test (expected = JsonMappingException.class)
+    public void whenVersionIsConfigured_PropertiesNotInVersionFail() throws IOException {
+        reader.withAttribute(Version.JsonVersionConfigDeserializing, "0.7")
+                .readValue(JSON_VER_10);
+    }
+
+    @Test (expected = JsonMappingException.class)
+    public void whenVersionIsGreaterThanModelVersion_Fail() throws IOException {
+        reader.withAttribute(Version.JsonVersionConfigDeserializing, "1.1")
+                .readValue(JSON_VER_10);
+    }
+}
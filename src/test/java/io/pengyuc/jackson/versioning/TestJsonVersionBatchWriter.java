@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import io.pengyuc.jackson.versioning.models.VersionedCar;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class TestJsonVersionBatchWriter {
+    private static final ObjectWriter writer = new ObjectMapper().registerModule(new JsonVersioningModule()).writer();
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+    private static List<VersionedCar> cars(int count) {
+        List<VersionedCar> cars = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++)
+            cars.add(new VersionedCar(i, "Model" + i, "Toyota", i % 2 == 0));
+        return cars;
+    }
+
+    private static String write(JsonVersionBatchWriter batchWriter, List<?> values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchWriter.write(values, out);
+        return out.toString("UTF-8");
+    }
+
+    private static String writeParallel(JsonVersionBatchWriter batchWriter, List<?> values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchWriter.writeParallel(values, out, pool);
+        return out.toString("UTF-8");
+    }
+
+    @AfterClass
+    public static void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void writeArray_SameAsWritingTheList() throws IOException {
+        List<VersionedCar> cars = cars(10);
+        String expected = writer.withAttribute(Version.JsonVersionConfigSerializing, "0.5").writeValueAsString(cars);
+
+        Assert.assertEquals(expected, write(JsonVersionBatchWriter.forVersion(writer, "0.5"), cars));
+    }
+
+    @Test
+    public void writeArrayInParallel_SameAsStreaming() throws IOException {
+        List<VersionedCar> cars = cars(10);
+        JsonVersionBatchWriter batchWriter = JsonVersionBatchWriter.forVersion(writer, "0.8").withChunkSize(3);
+
+        Assert.assertEquals(write(batchWriter, cars), writeParallel(batchWriter, cars));
+    }
+
+    @Test
+    public void writeNewlineDelimited_WriteEachValueOnItsLine() throws IOException {
+        List<VersionedCar> cars = cars(5);
+        ObjectWriter versionWriter = writer.withAttribute(Version.JsonVersionConfigSerializing, "0.8");
+        String lines = write(JsonVersionBatchWriter.forVersion(writer, "0.8")
+                .withFormat(JsonVersionBatchWriter.Format.NEWLINE_DELIMITED), cars);
+
+        StringBuilder expected = new StringBuilder();
+        for (VersionedCar car : cars)
+            expected.append(versionWriter.writeValueAsString(car)).append('\n');
+        Assert.assertEquals(expected.toString(), lines);
+    }
+
+    @Test
+    public void writeNewlineDelimitedInParallel_SameAsStreaming() throws IOException {
+        List<VersionedCar> cars = cars(10);
+        JsonVersionBatchWriter batchWriter = JsonVersionBatchWriter.forVersion(writer, "0.1")
+                .withFormat(JsonVersionBatchWriter.Format.NEWLINE_DELIMITED)
+                .withChunkSize(4);
+
+        Assert.assertEquals(write(batchWriter, cars), writeParallel(batchWriter, cars));
+    }
+
+    @Test
+    public void writeEmptyBatch() throws IOException {
+        JsonVersionBatchWriter batchWriter = JsonVersionBatchWriter.forVersion(writer, "1.0");
+        JsonVersionBatchWriter linesWriter = batchWriter.withFormat(JsonVersionBatchWriter.Format.NEWLINE_DELIMITED);
+
+        Assert.assertEquals("[]", write(batchWriter, ImmutableList.of()));
+        Assert.assertEquals("[]", writeParallel(batchWriter, ImmutableList.of()));
+        Assert.assertEquals("", write(linesWriter, ImmutableList.of()));
+        Assert.assertEquals("", writeParallel(linesWriter, ImmutableList.of()));
+    }
+
+    @Test (expected = IOException.class)
+    public void writeVersionAfterModelVersionInParallel_Fail() throws IOException {
+        writeParallel(JsonVersionBatchWriter.forVersion(writer, "1.1").withChunkSize(2), cars(5));
+    }
+}
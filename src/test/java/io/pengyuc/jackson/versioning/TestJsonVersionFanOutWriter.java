@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.collect.Lists;
+import io.pengyuc.jackson.versioning.annotations.JsonSince;
+import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
+import io.pengyuc.jackson.versioning.models.CarWrapper;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithMigrations;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithVersionProperty;
+import io.pengyuc.jackson.versioning.models.VersionedCar;
+import io.pengyuc.jackson.versioning.models.VersionedCarWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestJsonVersionFanOutWriter {
+    private static final ObjectWriter writer = new ObjectMapper().registerModule(new JsonVersioningModule()).writer();
+    private static final String[] VERSIONS = {"0.1", "0.5", "0.8", "0.9", "1.0"};
+
+    /**
+     * "tags" is the same in all the versions, with a serializer that counts its runs
+     */
+    @JsonVersioned("1.0")
+    public static class ModelWithSharedValue {
+        @JsonSince("0.5")
+        public String name = "rav4";
+        @JsonSerialize(using = CountingSerializer.class)
+        public List<String> tags = Arrays.asList("suv", "h\u00e9brid", "awd");
+    }
+
+    @JsonVersioned("1.0")
+    public static class SelfReferencingModel {
+        @JsonSince("0.5")
+        public String name = "loop";
+        public SelfReferencingModel next;
+    }
+
+    public static class CountingSerializer extends JsonSerializer<List<String>> {
+        static final AtomicInteger runs = new AtomicInteger();
+
+        @Override
+        public void serialize(List<String> value, JsonGenerator gen, SerializerProvider serializers)
+                throws IOException {
+            runs.incrementAndGet();
+            gen.writeStartArray();
+            for (String element : value)
+                gen.writeString(element);
+            gen.writeEndArray();
+        }
+    }
+
+    /**
+     * Counts the arrays written token by token and the raw values copied
+     */
+    private static class CountingGenerator extends JsonGeneratorDelegate {
+        int arrays;
+        int rawValues;
+
+        CountingGenerator(JsonGenerator delegate) {
+            super(delegate, false);
+        }
+
+        @Override
+        public void writeStartArray() throws IOException {
+            arrays++;
+            super.writeStartArray();
+        }
+
+        @Override
+        public void writeRawValue(char[] text, int offset, int len) throws IOException {
+            rawValues++;
+            super.writeRawValue(text, offset, len);
+        }
+    }
+
+    private static void assertSameAsWritingEachVersion(ObjectWriter writer, Object value) throws JsonProcessingException {
+        List<String> jsons = JsonVersionFanOutWriter.forVersions(writer, VERSIONS).writeValuesAsStrings(value);
+
+        Assert.assertEquals(VERSIONS.length, jsons.size());
+        for (int i = 0; i < VERSIONS.length; i++) {
+            Assert.assertEquals(VERSIONS[i],
+                    writer.withAttribute(Version.JsonVersionConfigSerializing, VERSIONS[i]).writeValueAsString(value),
+                    jsons.get(i));
+        }
+    }
+
+    @Test
+    public void writeVersionedBean_SameAsWritingEachVersion() throws JsonProcessingException {
+        ModelPojoWithVersionProperty pojo = new ModelPojoWithVersionProperty();
+        pojo.setDeprecatedAt08("DepAt08");
+        pojo.setDeprecatedAt09("DepAt09");
+        pojo.setAlwaysThereAttribute("alwaysThere");
+
+        assertSameAsWritingEachVersion(writer, pojo);
+    }
+
+    @Test
+    public void writeNestedVersionedBeans_SameAsWritingEachVersion() throws JsonProcessingException {
+        assertSameAsWritingEachVersion(writer, Arrays.asList(
+                new VersionedCarWrapper(new VersionedCar()),
+                new CarWrapper(new VersionedCar(7, "Sienna", "Toyota", false)),
+                null));
+    }
+
+    @Test
+    public void writeMigratedBean_SameAsWritingEachVersion() throws JsonProcessingException {
+        ModelPojoWithMigrations pojo = new ModelPojoWithMigrations();
+        pojo.setName("Rav4");
+        pojo.setMake("Toyota");
+        pojo.setSeats(5);
+
+        assertSameAsWritingEachVersion(writer, pojo);
+    }
+
+    @Test
+    public void writeWithPrettyPrinter_SameAsWritingEachVersion() throws JsonProcessingException {
+        assertSameAsWritingEachVersion(writer.with(SerializationFeature.INDENT_OUTPUT),
+                new VersionedCarWrapper(new VersionedCar()));
+    }
+
+    @Test
+    public void setTargetVersionInProperty_ShouldOverrideFanOutVersions() throws JsonProcessingException {
+        ModelPojoWithVersionProperty pojo = new ModelPojoWithVersionProperty();
+        pojo.setVersion("0.8");
+        pojo.setDeprecatedAt09("DepAt09");
+
+        List<String> jsons = JsonVersionFanOutWriter.forVersions(writer, "0.9", "1.0").writeValuesAsStrings(pojo);
+
+        Assert.assertEquals(jsons.get(0), jsons.get(1));
+        Assert.assertTrue(jsons.get(0).contains("\"version\":\"0.8\""));
+    }
+
+    @Test
+    public void writeAsBytes_SameAsStrings() throws Exception {
+        JsonVersionFanOutWriter fanOut = JsonVersionFanOutWriter.forVersions(writer, VERSIONS);
+        VersionedCarWrapper value = new VersionedCarWrapper(new VersionedCar());
+
+        List<String> jsons = fanOut.writeValuesAsStrings(value);
+        List<byte[]> bytes = fanOut.writeValuesAsBytes(value);
+        for (int i = 0; i < VERSIONS.length; i++)
+            Assert.assertEquals(jsons.get(i), new String(bytes.get(i), "UTF-8"));
+    }
+
+    @Test (expected = JsonProcessingException.class)
+    public void writeVersionAfterModelVersion_Fail() throws JsonProcessingException {
+        JsonVersionFanOutWriter.forVersions(writer, "1.0", "1.1").writeValuesAsStrings(new VersionedCar());
+    }
+
+    @Test
+    public void writeValueSharedByVersions_EncodeItOnceAndCopyIt() throws IOException {
+        String[] versions = {"0.1", "0.5", "1.0"};
+        JsonVersionFanOutWriter fanOut = JsonVersionFanOutWriter.forVersions(writer, versions);
+        List<ByteArrayOutputStream> outputs = Lists.newArrayList();
+        List<CountingGenerator> generators = Lists.newArrayList();
+        for (int i = 0; i < versions.length; i++) {
+            outputs.add(new ByteArrayOutputStream());
+            generators.add(new CountingGenerator(writer.getFactory().createGenerator(outputs.get(i), JsonEncoding.UTF8)));
+        }
+        CountingSerializer.runs.set(0);
+
+        fanOut.writeValues(new ModelWithSharedValue(), generators);
+
+        Assert.assertEquals(1, CountingSerializer.runs.get());
+        for (int i = 0; i < versions.length; i++) {
+            generators.get(i).close();
+            Assert.assertEquals(0, generators.get(i).arrays);
+            Assert.assertEquals(1, generators.get(i).rawValues);
+            Assert.assertArrayEquals(versions[i], writer.withAttribute(Version.JsonVersionConfigSerializing, versions[i])
+                    .writeValueAsBytes(new ModelWithSharedValue()), outputs.get(i).toByteArray());
+        }
+    }
+
+    @Test
+    public void writeSelfReferencingBean_FailWithInfiniteRecursion() throws JsonProcessingException {
+        SelfReferencingModel first = new SelfReferencingModel();
+        first.next = new SelfReferencingModel();
+        first.next.next = first;
+        try {
+            JsonVersionFanOutWriter.forVersions(writer, "0.1", "1.0").writeValuesAsStrings(first);
+            Assert.fail("Expected the infinite recursion to be reported");
+        } catch (JsonMappingException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Infinite recursion (StackOverflowError)"));
+        }
+    }
+}
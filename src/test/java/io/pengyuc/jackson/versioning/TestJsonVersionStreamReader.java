@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithMigrations;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithVersionProperty;
+import io.pengyuc.jackson.versioning.models.VersionedCarWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+public class TestJsonVersionStreamReader {
+    private static final ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule());
+
+    private static final String NDJSON_WITHOUT_VERSION =
+            "{\"deprecatedAt08\": \"something08\", \"alwaysThereAttribute\": \"first\"}\n" +
+            "{\"deprecatedAt09\": \"something09\", \"alwaysThereAttribute\": \"second\"}\n";
+
+    @Test
+    public void readArrayWithoutStreamVersion_UseVersionOfEachElement() throws IOException {
+        List<ModelPojoWithVersionProperty> pojos = JsonVersionStreamReader
+                .forType(mapper.reader(), ModelPojoWithVersionProperty.class)
+                .readValues("[{\"version\": \"0.6\", \"deprecatedAt08\": \"something08\"}," +
+                        "{\"deprecatedAt09\": \"something09\", \"version\": \"0.8\"}," +
+                        "{\"alwaysThereAttribute\": \"alwaysThere\"}]")
+                .readAll();
+
+        Assert.assertEquals(3, pojos.size());
+        Assert.assertEquals("0.6", pojos.get(0).getVersion());
+        Assert.assertEquals("something08", pojos.get(0).getDeprecatedAt08());
+        Assert.assertEquals("0.8", pojos.get(1).getVersion());
+        Assert.assertEquals("something09", pojos.get(1).getDeprecatedAt09());
+        Assert.assertEquals("1.0", pojos.get(2).getVersion());
+    }
+
+    @Test
+    public void readNewlineDelimitedWithStreamVersion_UseStreamVersion() throws IOException {
+        MappingIterator<ModelPojoWithVersionProperty> pojos = JsonVersionStreamReader
+                .forType(mapper.reader(), ModelPojoWithVersionProperty.class)
+                .withVersion("0.6")
+                .readValues(new ByteArrayInputStream(NDJSON_WITHOUT_VERSION.getBytes("UTF-8")));
+
+        ModelPojoWithVersionProperty pojo = pojos.nextValue();
+        Assert.assertEquals("0.6", pojo.getVersion());
+        Assert.assertEquals("something08", pojo.getDeprecatedAt08());
+        Assert.assertEquals("first", pojo.getAlwaysThereAttribute());
+        pojo = pojos.nextValue();
+        Assert.assertEquals("0.6", pojo.getVersion());
+        Assert.assertEquals("something09", pojo.getDeprecatedAt09());
+        Assert.assertFalse(pojos.hasNextValue());
+    }
+
+    @Test (expected = JsonMappingException.class)
+    public void readWithStreamVersion_FailDeprecatedAttributes() throws IOException {
+        JsonVersionStreamReader.forType(mapper.reader(), ModelPojoWithVersionProperty.class)
+                .withVersion("0.9")
+                .readValues(NDJSON_WITHOUT_VERSION)
+                .readAll();
+    }
+
+    @Test (expected = JsonMappingException.class)
+    public void readWithStreamVersionAfterModelVersion_Fail() throws IOException {
+        JsonVersionStreamReader.forType(mapper.reader(), ModelPojoWithVersionProperty.class)
+                .withVersion("1.1")
+                .readValues(NDJSON_WITHOUT_VERSION)
+                .readAll();
+    }
+
+    @Test
+    public void readWithStreamVersion_RunConvertersOfStreamVersion() throws IOException {
+        List<ModelPojoWithMigrations> pojos = JsonVersionStreamReader
+                .forType(mapper.reader(), ModelPojoWithMigrations.class)
+                .withVersion("0.4")
+                .readValues("[{\"title\": \"rav4\", \"make\": \"toyota\"}, {\"title\": \"civic\", \"legacy\": 1}]")
+                .readAll();
+
+        Assert.assertEquals(2, pojos.size());
+        Assert.assertEquals("0.4", pojos.get(0).getVersion());
+        Assert.assertEquals("rav4", pojos.get(0).getName());
+        Assert.assertEquals("TOYOTA", pojos.get(0).getMake());
+        Assert.assertEquals(Integer.valueOf(4), pojos.get(0).getSeats());
+        Assert.assertEquals("civic", pojos.get(1).getName());
+    }
+
+    @Test
+    public void readWithStreamVersion_ReadNestedBeansInStreamVersion() throws IOException {
+        List<VersionedCarWrapper> wrappers = JsonVersionStreamReader
+                .forType(mapper.reader(), VersionedCarWrapper.class)
+                .withVersion("0.5")
+                .readValues("{\"car\": {\"capacity\": 7, \"validBetween2to7\": false}}\n{\"car\": null}")
+                .readAll();
+
+        Assert.assertEquals(2, wrappers.size());
+        Assert.assertEquals(Integer.valueOf(7), wrappers.get(0).getCar().getCapacity());
+        Assert.assertFalse(wrappers.get(0).getCar().getValidBetween2to7());
+        Assert.assertNull(wrappers.get(1).getCar());
+    }
+
+    @Test (expected = JsonMappingException.class)
+    public void readWithStreamVersion_FailDeprecatedAttributesOfNestedBeans() throws IOException {
+        JsonVersionStreamReader.forType(mapper.reader(), VersionedCarWrapper.class)
+                .withVersion("0.5")
+                .readValues("{\"car\": {\"model\": \"Sienna\"}}")
+                .readAll();
+    }
+}
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithConverters;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithVersionProperty;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestJsonVersioningMetrics {
+    @Test
+    public void whenValuesAreWrittenAndRead_CountThemByModelAndVersion() throws IOException {
+        JsonVersioningMetrics metrics = new JsonVersioningMetrics();
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule(metrics));
+
+        ModelPojoWithVersionProperty pojo = new ModelPojoWithVersionProperty();
+        pojo.setVersion("0.8");
+        mapper.writeValueAsString(pojo);
+        mapper.writeValueAsString(pojo);
+        mapper.readValue("{\"version\": \"0.9\"}", ModelPojoWithVersionProperty.class);
+
+        JsonVersioningMetrics.VersionSnapshot written = metrics.getSnapshot(ModelPojoWithVersionProperty.class, "0.8");
+        Assert.assertEquals(2, written.stage(JsonVersioningListener.Stage.SERIALIZE).getCount());
+        Assert.assertNull(written.stage(JsonVersioningListener.Stage.DESERIALIZE));
+        JsonVersioningMetrics.StageSnapshot read = metrics.getSnapshot(ModelPojoWithVersionProperty.class, "0.9")
+                .stage(JsonVersioningListener.Stage.DESERIALIZE);
+        Assert.assertEquals(1, read.getCount());
+        Assert.assertTrue(read.getP99Nanos() >= read.getMedianNanos());
+        Assert.assertTrue(read.getMaxNanos() >= read.getMeanNanos());
+        Assert.assertEquals(2, metrics.getSnapshots().size());
+    }
+
+    @Test
+    public void whenJsonIsConverted_TimeTheConversion() throws IOException {
+        JsonVersioningMetrics metrics = new JsonVersioningMetrics(1);
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule(metrics));
+
+        mapper.readValue("{\"version\": \"0.3\", \"title\": \"rav4\"}", ModelPojoWithConverters.class);
+
+        JsonVersioningMetrics.VersionSnapshot snapshot = metrics.getSnapshot(ModelPojoWithConverters.class, "0.3");
+        Assert.assertEquals(1, snapshot.stage(JsonVersioningListener.Stage.DESERIALIZE).getCount());
+        Assert.assertEquals(1, snapshot.stage(JsonVersioningListener.Stage.CONVERT).getCount());
+    }
+
+    @Test
+    public void whenVersionIsNotFirst_TimeTheBuffering() throws IOException {
+        JsonVersioningMetrics metrics = new JsonVersioningMetrics();
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule(metrics));
+
+        mapper.readValue("{\"version\": \"0.9\"}", ModelPojoWithVersionProperty.class);
+        mapper.readValue("{\"alwaysThereAttribute\": \"a\", \"version\": \"0.9\"}", ModelPojoWithVersionProperty.class);
+
+        JsonVersioningMetrics.VersionSnapshot snapshot = metrics.getSnapshot(ModelPojoWithVersionProperty.class, "0.9");
+        Assert.assertEquals(1, snapshot.stage(JsonVersioningListener.Stage.BUFFER).getCount());
+        Assert.assertEquals(2, snapshot.stage(JsonVersioningListener.Stage.DESERIALIZE).getCount());
+    }
+
+    @Test
+    public void whenJsonIsRead_ReportItsSize() throws IOException {
+        final List<Long> payloadSizes = Lists.newArrayList();
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule(new JsonVersioningListener() {
+            @Override
+            public void onStage(Class<?> model, Version jsonVersion, Stage stage, long elapsedNanos, long payloadSize) {
+                if (stage == Stage.DESERIALIZE)
+                    payloadSizes.add(payloadSize);
+            }
+        }));
+
+        String json = "{\"alwaysThereAttribute\": \"a\", \"version\": \"0.9\"}";
+        mapper.readValue(json, ModelPojoWithVersionProperty.class);
+        mapper.readValue(json.getBytes(StandardCharsets.UTF_8), ModelPojoWithVersionProperty.class);
+        mapper.readValue(mapper.readTree(json).traverse(), ModelPojoWithVersionProperty.class);
+
+        Assert.assertEquals(Arrays.asList((long) json.length(), (long) json.length(), -1L), payloadSizes);
+    }
+
+    @Test
+    public void whenValuesAreRejected_CountTheRejections() throws IOException {
+        JsonVersioningMetrics metrics = new JsonVersioningMetrics(3);
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule(metrics));
+
+        for (String json : new String[] {
+                "{\"version\": \"0.9\", \"deprecatedAt08\": \"a\"}",
+                "{\"deprecatedAt08\": \"a\", \"version\": \"0.9\"}",
+                "{\"version\": \"2.0\"}"}) {
+            try {
+                mapper.readValue(json, ModelPojoWithVersionProperty.class);
+                Assert.fail("Expected a rejection of " + json);
+            } catch (JsonMappingException e) {
+                // expected
+            }
+        }
+
+        Assert.assertEquals(2, metrics.getSnapshot(ModelPojoWithVersionProperty.class, "0.9").getPropertyRejections());
+        Assert.assertEquals(1, metrics.getSnapshot(ModelPojoWithVersionProperty.class, "2.0").getVersionRejections());
+    }
+
+    @Test
+    public void whenListenersAreCombined_TellEachOneOfTheStagesAndCheckThemOncePerValue() throws IOException {
+        JsonVersioningMetrics metrics = new JsonVersioningMetrics();
+        final List<JsonVersioningListener.Stage> stages = Lists.newArrayList();
+        final List<JsonVersioningListener.Rejection> rejections = Lists.newArrayList();
+        JsonVersioningListener recorder = new JsonVersioningListener() {
+            @Override
+            public void onStage(Class<?> model, Version jsonVersion, Stage stage, long elapsedNanos, long payloadSize) {
+                stages.add(stage);
+            }
+
+            @Override
+            public void onRejected(Class<?> model, Version jsonVersion, Rejection rejection) {
+                rejections.add(rejection);
+            }
+        };
+        final AtomicInteger checks = new AtomicInteger();
+        JsonVersioningListener counted = new JsonVersioningListener() {
+            @Override
+            public boolean isEnabled() {
+                checks.incrementAndGet();
+                return true;
+            }
+        };
+        ObjectMapper mapper = new ObjectMapper().registerModule(
+                new JsonVersioningModule(JsonVersioningListener.of(counted, metrics, recorder)));
+
+        mapper.readValue("{\"version\": \"0.9\"}", ModelPojoWithVersionProperty.class);
+        try {
+            mapper.readValue("{\"version\": \"2.0\"}", ModelPojoWithVersionProperty.class);
+            Assert.fail("Expected a rejection");
+        } catch (JsonMappingException e) {
+            // expected
+        }
+
+        Assert.assertEquals(1, metrics.getSnapshot(ModelPojoWithVersionProperty.class, "0.9")
+                .stage(JsonVersioningListener.Stage.DESERIALIZE).getCount());
+        Assert.assertEquals(1, metrics.getSnapshot(ModelPojoWithVersionProperty.class, "2.0").getVersionRejections());
+        Assert.assertEquals(Arrays.asList(JsonVersioningListener.Stage.DESERIALIZE), stages);
+        Assert.assertEquals(Arrays.asList(JsonVersioningListener.Rejection.VERSION_AFTER_MODEL), rejections);
+        Assert.assertEquals(2, checks.get());
+    }
+
+    @Test
+    public void whenNoCombinedListenerIsEnabled_TheCombinationIsDisabled() {
+        Assert.assertFalse(JsonVersioningListener.of(JsonVersioningListener.NO_OP, JsonVersioningListener.NO_OP)
+                .isEnabled());
+        Assert.assertTrue(JsonVersioningListener.of(JsonVersioningListener.NO_OP, new JsonVersioningMetrics())
+                .isEnabled());
+        Assert.assertSame(JsonVersioningListener.NO_OP, JsonVersioningListener.of());
+    }
+
+    @Test
+    public void whenRegisteredAsMBean_ExposeTheSnapshots() throws Exception {
+        JsonVersioningMetrics metrics = new JsonVersioningMetrics();
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule(metrics));
+        mapper.readValue("{\"version\": \"0.9\"}", ModelPojoWithVersionProperty.class);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.registerMBean();
+        try {
+            CompositeData[] snapshots = (CompositeData[]) server.getAttribute(name, "Snapshots");
+            Assert.assertEquals(1, snapshots.length);
+            Assert.assertEquals("0.9", snapshots[0].get("version"));
+            Assert.assertEquals(ModelPojoWithVersionProperty.class.getName(), snapshots[0].get("model"));
+
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            Assert.assertTrue(metrics.getSnapshots().isEmpty());
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
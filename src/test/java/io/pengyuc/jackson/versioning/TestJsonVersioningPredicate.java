@@ -120,4 +120,14 @@ public class TestJsonVersioningPredicate {
         Assert.assertTrue(predicate.apply(mockVersioning("1.0", "0.5")));
     }
 
+    @Test
+    public void compiledRangeAgreesWithAnnotations() {
+        Predicate<VersionRange> rangePredicate = JsonVersioningPredicate.forRangeInVersion(Version.fromString("1.0"));
+        Assert.assertTrue(rangePredicate.apply(VersionRange.ALL));
+        Assert.assertTrue(rangePredicate.apply(VersionRange.of(Version.fromString("0.9"), Version.fromString("1.1"))));
+        Assert.assertFalse(rangePredicate.apply(VersionRange.of(null, Version.fromString("1.0"))));
+        Assert.assertTrue(rangePredicate.apply(VersionRange.of(Version.fromString("2.0"), Version.fromString("1.1"))));
+        Assert.assertFalse(rangePredicate.apply(VersionRange.of(Version.fromString("1.1"), Version.fromString("0.9"))));
+    }
+
 }
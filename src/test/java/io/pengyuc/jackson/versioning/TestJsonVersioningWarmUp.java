@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+import io.pengyuc.jackson.versioning.annotations.JsonSince;
+import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithMigrations;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithVersionProperty;
+import io.pengyuc.jackson.versioning.models.VersionedCar;
+import io.pengyuc.jackson.versioning.models.VersionedCarWrapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import static net.javacrumbs.jsonunit.fluent.JsonFluentAssert.assertThatJson;
+
+public class TestJsonVersioningWarmUp {
+    @JsonVersioned("1.0")
+    public static class ModelWithInvalidVersion {
+        @JsonSince("next")
+        public String name;
+    }
+
+    private static ObjectMapper newMapper() {
+        return new ObjectMapper().registerModule(new JsonVersioningModule());
+    }
+
+    private static JsonVersioningSerializer findSerializer(ObjectMapper mapper, Class<?> model)
+            throws JsonMappingException {
+        return (JsonVersioningSerializer) mapper.getSerializerProviderInstance().findValueSerializer(model);
+    }
+
+    private static JsonVersioningDeserializer findDeserializer(ObjectMapper mapper, Class<?> model)
+            throws JsonMappingException {
+        return (JsonVersioningDeserializer) ((DefaultDeserializationContext) mapper.getDeserializationContext())
+                .createInstance(mapper.getDeserializationConfig(), null, mapper.getInjectableValues())
+                .findRootValueDeserializer(mapper.constructType(model));
+    }
+
+    @Test
+    public void whenModelsAreWarmedUp_TheirSerializersAreCached() throws IOException {
+        ObjectMapper mapper = newMapper();
+        JsonVersioningWarmUp.Report report = JsonVersioningWarmUp.forMapper(mapper)
+                .withModels(VersionedCar.class, ModelPojoWithVersionProperty.class, String.class)
+                .withVersions("0.8", "1.0")
+                .run();
+
+        Assert.assertEquals(2, report.getModelCount());
+        Assert.assertEquals(2, report.getVersionCount());
+        Assert.assertTrue(((DefaultSerializerProvider) mapper.getSerializerProvider()).cachedSerializersCount() >= 2);
+
+        VersionedCar car = new VersionedCar(5, "civic", "honda", true);
+        assertThatJson(mapper.writer().withAttribute(Version.JsonVersionConfigSerializing, "0.8")
+                .writeValueAsString(car))
+                .isEqualTo(newMapper().writer().withAttribute(Version.JsonVersionConfigSerializing, "0.8")
+                        .writeValueAsString(car));
+    }
+
+    @Test
+    public void whenModelsAreWarmedUp_TheStructuresOfEachVersionAreBuilt() throws IOException {
+        ObjectMapper mapper = newMapper();
+        JsonVersioningWarmUp.forMapper(mapper)
+                .withModels(ModelPojoWithVersionProperty.class, ModelPojoWithMigrations.class)
+                .withVersions("0.4", "0.6", "0.9")
+                .run();
+
+        JsonVersioningSerializer serializer = findSerializer(mapper, ModelPojoWithVersionProperty.class);
+        Assert.assertEquals(3, serializer.cachedVersionCount());
+        // 0.4 and 0.6 are both before deprecatedAt08 is dropped
+        Assert.assertEquals(2, serializer.builtIntervalCount());
+        JsonVersioningDeserializer deserializer = findDeserializer(mapper, ModelPojoWithVersionProperty.class);
+        Assert.assertEquals(3, deserializer.cachedVersionCount());
+        Assert.assertEquals(0, deserializer.builtPlanCount());
+
+        // Each version falls in its own interval of the converters; only 0.9 has nothing to convert
+        JsonVersioningDeserializer migratingDeserializer = findDeserializer(mapper, ModelPojoWithMigrations.class);
+        Assert.assertEquals(3, migratingDeserializer.builtPlanCount());
+        Assert.assertEquals(1, migratingDeserializer.cachedVersionCount());
+        Assert.assertEquals(3, findSerializer(mapper, ModelPojoWithMigrations.class).cachedVersionCount());
+    }
+
+    @Test
+    public void whenPackageIsScanned_WarmUpItsVersionedModels() throws IOException {
+        JsonVersioningWarmUp warmUp = JsonVersioningWarmUp.forMapper(newMapper())
+                .withPackage("io.pengyuc.jackson.versioning.models");
+
+        Assert.assertTrue(warmUp.getModels().contains(VersionedCar.class));
+        Assert.assertTrue(warmUp.getModels().contains(VersionedCarWrapper.class));
+        Assert.assertTrue(warmUp.getModels().contains(ModelPojoWithMigrations.class));
+        Assert.assertFalse(warmUp.getModels().contains(TestJsonVersioningWarmUp.class));
+        Assert.assertEquals(warmUp.getModels().size(), warmUp.run().getModelCount());
+    }
+
+    @Test
+    public void whenRunInParallel_WarmUpEveryModel() throws IOException {
+        ObjectMapper mapper = newMapper();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            JsonVersioningWarmUp.Report report = JsonVersioningWarmUp.forMapper(mapper)
+                    .withPackage("io.pengyuc.jackson.versioning.models")
+                    .withVersions("0.5", "0.9")
+                    .run(pool);
+
+            Assert.assertTrue(report.getModelCount() >= 4);
+        } finally {
+            pool.shutdown();
+        }
+
+        ModelPojoWithMigrations pojo = mapper.readValue("{\"version\": \"0.4\", \"title\": \"rav4\", \"make\": \"toyota\"}",
+                ModelPojoWithMigrations.class);
+        Assert.assertEquals("rav4", pojo.getName());
+        Assert.assertEquals(Integer.valueOf(4), pojo.getSeats());
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void whenModelHasInvalidVersions_ReportTheFailure() throws IOException {
+        JsonVersioningWarmUp.forMapper(newMapper())
+                .withModels(ModelWithInvalidVersion.class)
+                .run();
+    }
+}
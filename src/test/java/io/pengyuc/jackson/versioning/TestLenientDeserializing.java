@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithConverters;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithMigrations;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithVersionProperty;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TestLenientDeserializing {
+    private static final ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule());
+    private static final ObjectMapper lenientMapper =
+            new ObjectMapper().registerModule(new JsonVersioningModule().setLenientDeserializing(true));
+
+    private static final String JSON_VER_09_WITH_OLD_ATTR =
+            "{\"deprecatedAt08\": {\"nested\": [1, {\"deprecatedAt08\": 2}]}, \"version\": \"0.9\", " +
+            "\"alwaysThereAttribute\": \"alwaysThere\", \"deprecatedAt08\": \"something08\"}";
+
+    @Test
+    public void whenModuleIsLenient_SkipPropertiesNotInVersion() throws IOException {
+        ModelPojoWithVersionProperty pojo = lenientMapper.readValue(JSON_VER_09_WITH_OLD_ATTR,
+                ModelPojoWithVersionProperty.class);
+
+        Assert.assertEquals("0.9", pojo.getVersion());
+        Assert.assertNull(pojo.getDeprecatedAt08());
+        Assert.assertEquals("alwaysThere", pojo.getAlwaysThereAttribute());
+    }
+
+    @Test
+    public void whenReaderIsLenient_SkipPropertiesNotInVersion() throws IOException {
+        ModelPojoWithVersionProperty pojo = mapper.readerFor(ModelPojoWithVersionProperty.class)
+                .withAttribute(Version.JsonVersionConfigLenient, true)
+                .readValue(JSON_VER_09_WITH_OLD_ATTR);
+
+        Assert.assertNull(pojo.getDeprecatedAt08());
+        Assert.assertEquals("alwaysThere", pojo.getAlwaysThereAttribute());
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void whenReaderIsStrict_RejectPropertiesNotInVersionOfLenientModule() throws IOException {
+        lenientMapper.readerFor(ModelPojoWithVersionProperty.class)
+                .withAttribute(Version.JsonVersionConfigLenient, "false")
+                .readValue(JSON_VER_09_WITH_OLD_ATTR);
+    }
+
+    @Test
+    public void whenJsonIsMigrated_SkipPropertiesNotInVersionBeforeMigrating() throws IOException {
+        // "seats" is not in 0.6, so it is skipped and inserted by the migration
+        ModelPojoWithMigrations pojo = lenientMapper.readValue(
+                "{\"version\": \"0.6\", \"seats\": {\"count\": 7}, \"name\": \"rav4\", \"make\": \"toyota\"}",
+                ModelPojoWithMigrations.class);
+
+        Assert.assertEquals("rav4", pojo.getName());
+        Assert.assertEquals("TOYOTA", pojo.getMake());
+        Assert.assertEquals(Integer.valueOf(4), pojo.getSeats());
+    }
+
+    @Test
+    public void whenJsonIsConverted_SkipPropertiesNotInVersionBeforeConverting() throws IOException {
+        ModelPojoWithConverters pojo = lenientMapper.readValue(
+                "{\"title\": \"rav4\", \"name\": [\"not\", \"in\", \"0.3\"], \"seats\": 7, \"version\": \"0.3\"}",
+                ModelPojoWithConverters.class);
+
+        Assert.assertEquals("rav4", pojo.getName());
+        Assert.assertEquals(Integer.valueOf(4), pojo.getSeats());
+    }
+
+    @Test
+    public void whenOnlyPropertiesNotInVersion_BindAnEmptyBean() throws IOException {
+        ModelPojoWithVersionProperty pojo = lenientMapper.readValue(
+                "{\"version\": \"0.9\", \"deprecatedAt08\": \"something08\"}", ModelPojoWithVersionProperty.class);
+
+        Assert.assertEquals("0.9", pojo.getVersion());
+        Assert.assertNull(pojo.getDeprecatedAt08());
+        Assert.assertNull(pojo.getAlwaysThereAttribute());
+    }
+}
@@ -28,6 +28,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import io.pengyuc.jackson.versioning.models.ModelPojoWithVersionProperty;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -83,4 +84,60 @@ public class TestSerializingWithJsonVersionProperty {
         assertThatJson(s).node(ATTR_DEPRECATED_AT_09).isAbsent();
         assertThatJson(s).node(ATTR_ALWAYS_THERE_ATTRIBUTE).isPresent();
     }
+
+    @Test
+    public void versionInPropertyIsWrittenToBytes() throws Exception {
+        pojo.setVersion("0.8");
+        String s = new String(writer.writeValueAsBytes(pojo), "UTF-8");
+
+        assertThatJson(s).node(ATTR_VERSION).isStringEqualTo("0.8");
+        assertThatJson(s).node(ATTR_DEPRECATED_AT_08).isAbsent();
+    }
+
+    @Test
+    public void alternatingVersions_ShouldEachWriteTheirOwnProperties() throws JsonProcessingException {
+        ObjectWriter writer08 = writer.withAttribute(Version.JsonVersionConfigSerializing, "0.8");
+        ObjectWriter writer09 = writer.withAttribute(Version.JsonVersionConfigSerializing, Version.fromString("0.9"));
+        for (int i = 0; i < 3; i++) {
+            String s08 = writer08.writeValueAsString(pojo);
+            String s09 = writer09.writeValueAsString(pojo);
+
+            assertThatJson(s08).node(ATTR_VERSION).isStringEqualTo("0.8");
+            assertThatJson(s08).node(ATTR_DEPRECATED_AT_09).isPresent();
+            assertThatJson(s09).node(ATTR_VERSION).isStringEqualTo("0.9");
+            assertThatJson(s09).node(ATTR_DEPRECATED_AT_09).isAbsent();
+        }
+    }
+
+    @Test
+    public void equalVersionsWithDifferentText_ShouldWriteTheirOwnText() throws JsonProcessingException {
+        pojo.setVersion("0.9.0");
+        String s1 = writer.writeValueAsString(pojo);
+        pojo.setVersion("0.9");
+        String s2 = writer.writeValueAsString(pojo);
+
+        assertThatJson(s1).node(ATTR_VERSION).isStringEqualTo("0.9.0");
+        assertThatJson(s2).node(ATTR_VERSION).isStringEqualTo("0.9");
+    }
+
+    @Test
+    public void moreVersionsThanCached_ShouldEachWriteTheirOwnVersionAndProperties() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule());
+        for (int round = 0; round < 2; round++) {
+            for (int i = 1; i <= 100; i++) {
+                pojo.setVersion("0.8." + i);
+                String s = mapper.writeValueAsString(pojo);
+
+                assertThatJson(s).node(ATTR_VERSION).isStringEqualTo("0.8." + i);
+                assertThatJson(s).node(ATTR_DEPRECATED_AT_08).isAbsent();
+                assertThatJson(s).node(ATTR_DEPRECATED_AT_09).isPresent();
+                assertThatJson(s).node(ATTR_ALWAYS_THERE_ATTRIBUTE).isPresent();
+            }
+        }
+
+        JsonVersioningSerializer serializer = (JsonVersioningSerializer) mapper.getSerializerProviderInstance()
+                .findValueSerializer(ModelPojoWithVersionProperty.class);
+        Assert.assertEquals(64, serializer.cachedVersionCount());
+        Assert.assertEquals(1, serializer.builtIntervalCount());
+    }
 }
@@ -24,6 +24,7 @@
 
 package io.pengyuc.jackson.versioning;
 
+import com.google.common.base.Strings;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -70,6 +71,18 @@ public class TestVersion {
         Version.fromString(".1");
     }
 
+    @Test
+    public void tryParsingInvalidVersions_ReturnsNull() {
+        Assert.assertNull(Version.tryFromString("1.and2"));
+        Assert.assertNull(Version.tryFromString("1.-2"));
+        Assert.assertNull(Version.tryFromString(".1"));
+        Assert.assertNull(Version.tryFromString(" . "));
+        Assert.assertNull(Version.tryFromString(Strings.repeat("1.", Version.MAX_SUB_VERSIONS + 1)));
+        Assert.assertNull(Version.tryFromChars("x1.2x".toCharArray(), 0, 4));
+        Assert.assertEquals(Version.fromString("1.2"), Version.tryFromChars("x1.2x".toCharArray(), 1, 3));
+        Assert.assertSame(Version.fromString("3.4"), Version.tryFromString("3.4"));
+    }
+
     @Test
     public void versionCompareLikeTheNumber() {
         Assert.assertEquals(0, Version.fromString("1").compareTo(Version.fromString("1")));
@@ -99,4 +112,51 @@ public class TestVersion {
         Assert.assertEquals(1, Version.fromString("1.2.0.1").compareTo(Version.fromString("1.2")));
     }
 
+    @Test
+    public void sameVersionStringReturnsCachedInstance() {
+        Assert.assertSame(Version.fromString("3.1.4"), Version.fromString("3.1.4"));
+        Assert.assertSame(Version.fromString("3.1.5"), Version.fromString("3..1.5."));
+    }
+
+    @Test
+    public void versionCanBeParsedFromCharacterRange() {
+        char[] chars = "{\"version\":\"2.7.1\"}".toCharArray();
+        Version version = Version.fromChars(chars, 12, 5);
+        Assert.assertEquals("2.7.1", version.toString());
+        Assert.assertSame(Version.fromString("2.7.1"), version);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void versionStringMustNotBeTooLong() {
+        Version.fromString(Strings.repeat("1.", Version.MAX_VERSION_STRING_LENGTH));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void versionMustNotHaveTooManySubVersions() {
+        Version.fromString(Strings.repeat("1.", Version.MAX_SUB_VERSIONS) + "1");
+    }
+
+    @Test (expected = NumberFormatException.class)
+    public void versionNumberMustFitInInteger() {
+        Version.fromString("1.2147483648");
+    }
+
+    @Test
+    public void versionsWithOmittedZerosAreEqual() {
+        Assert.assertEquals(Version.fromString("1"), Version.fromString("1.0.0"));
+        Assert.assertEquals(Version.fromString("1").hashCode(), Version.fromString("1.0.0").hashCode());
+        Assert.assertNotEquals(Version.fromString("1"), Version.fromString("1.0.1"));
+        Assert.assertEquals("1.0.0", Version.fromString("1.0.0").toString());
+    }
+
+    @Test
+    public void largeVersionNumbersCompareLikeSmallOnes() {
+        Assert.assertEquals(-1, Version.fromString("1.32767").compareTo(Version.fromString("1.32768")));
+        Assert.assertEquals(1, Version.fromString("20171018").compareTo(Version.fromString("2017.10")));
+        Assert.assertEquals(0, Version.fromString("1.2.3.4.5.0").compareTo(Version.fromString("1.2.3.4.5")));
+        Assert.assertEquals(Version.fromString("1.2.3.4.5.0"), Version.fromString("1.2.3.4.5"));
+        Assert.assertEquals(-1, Version.fromString("1.2.3.4").compareTo(Version.fromString("1.2.3.4.5")));
+        Assert.assertEquals(1, Version.fromString("70000").compareTo(Version.fromString("1.2.3.4.5")));
+    }
+
 }
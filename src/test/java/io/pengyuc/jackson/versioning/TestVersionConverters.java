@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.pengyuc.jackson.versioning.annotations.JsonUntil;
+import io.pengyuc.jackson.versioning.annotations.JsonVersionConverter;
+import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithConverters;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithMigrations;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static net.javacrumbs.jsonunit.fluent.JsonFluentAssert.assertThatJson;
+
+public class TestVersionConverters {
+    private static final ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule());
+
+    @JsonVersioned("1.0")
+    public static class ModelWithInstanceConverter {
+        public String name;
+
+        @JsonVersionConverter
+        public void convert(ObjectNode node) {
+        }
+    }
+
+    @JsonVersioned("1.0")
+    public static class ModelWithFailingConverter {
+        public String name;
+
+        @JsonVersionConverter
+        @JsonUntil("0.5")
+        private static void convert(ObjectNode node) {
+            throw new IllegalStateException("cannot convert");
+        }
+    }
+
+    @Test
+    public void whenJsonIsBeforeAllConverters_RunTheWholeChain() throws IOException {
+        ModelPojoWithConverters pojo = mapper.readValue(
+                "{\"version\": \"0.3\", \"title\": \"rav4\"}", ModelPojoWithConverters.class);
+
+        Assert.assertEquals("0.3", pojo.getVersion());
+        Assert.assertEquals("rav4", pojo.getName());
+        Assert.assertEquals(Integer.valueOf(4), pojo.getSeats());
+    }
+
+    @Test
+    public void whenJsonIsBetweenConverters_RunOnlyTheLaterConverters() throws IOException {
+        ModelPojoWithConverters pojo = mapper.readValue(
+                "{\"name\": \"rav4\", \"version\": \"0.6\"}", ModelPojoWithConverters.class);
+
+        Assert.assertEquals("0.6", pojo.getVersion());
+        Assert.assertEquals("rav4", pojo.getName());
+        Assert.assertEquals(Integer.valueOf(4), pojo.getSeats());
+    }
+
+    @Test
+    public void whenJsonIsAfterAllConverters_BindAsIs() throws IOException {
+        ModelPojoWithConverters pojo = mapper.readValue(
+                "{\"version\": \"0.9\", \"name\": \"rav4\", \"seats\": 7}", ModelPojoWithConverters.class);
+
+        Assert.assertEquals("rav4", pojo.getName());
+        Assert.assertEquals(Integer.valueOf(7), pojo.getSeats());
+    }
+
+    @Test
+    public void whenVersionIsInContext_RunTheConvertersOfThatVersion() throws IOException {
+        ModelPojoWithConverters pojo = mapper.reader()
+                .withAttribute(Version.JsonVersionConfigDeserializing, "0.4")
+                .forType(ModelPojoWithConverters.class)
+                .readValue("{\"title\": \"rav4\"}");
+
+        Assert.assertEquals("0.4", pojo.getVersion());
+        Assert.assertEquals("rav4", pojo.getName());
+        Assert.assertEquals(Integer.valueOf(4), pojo.getSeats());
+    }
+
+    @Test
+    public void whenReadFromTree_DoNotChangeTheTree() throws IOException {
+        ObjectNode tree = (ObjectNode) mapper.readTree("{\"version\": \"0.3\", \"title\": \"rav4\"}");
+        ModelPojoWithConverters pojo = mapper.treeToValue(tree, ModelPojoWithConverters.class);
+
+        Assert.assertEquals("rav4", pojo.getName());
+        Assert.assertEquals("rav4", tree.get("title").asText());
+        Assert.assertFalse(tree.has("name"));
+    }
+
+    @Test (expected = JsonMappingException.class)
+    public void whenJsonHasPropertiesNotInItsVersion_FailBeforeConverting() throws IOException {
+        mapper.readValue("{\"version\": \"0.3\", \"name\": \"rav4\"}", ModelPojoWithConverters.class);
+    }
+
+    @Test
+    public void whenConverterThrows_FailWithTheCause() throws IOException {
+        try {
+            mapper.reader()
+                    .withAttribute(Version.JsonVersionConfigDeserializing, "0.1")
+                    .forType(ModelWithFailingConverter.class)
+                    .readValue("{\"name\": \"rav4\"}");
+            Assert.fail();
+        } catch (JsonMappingException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void whenJsonIsBeforeAllMigrations_MigrateTheTokenStream() throws IOException {
+        ModelPojoWithMigrations pojo = mapper.readValue(
+                "{\"version\": \"0.3\", \"title\": \"rav4\", \"legacy\": {\"a\": [1, {}]}, \"make\": \"toy\"}",
+                ModelPojoWithMigrations.class);
+
+        Assert.assertEquals("0.3", pojo.getVersion());
+        Assert.assertEquals("rav4", pojo.getName());
+        Assert.assertEquals("TOY", pojo.getMake());
+        Assert.assertEquals(Integer.valueOf(4), pojo.getSeats());
+    }
+
+    @Test
+    public void whenObjectIsEmptyAfterTheVersion_InsertTheMigratedFields() throws IOException {
+        ModelPojoWithMigrations pojo = mapper.readValue("{\"version\": \"0.6\"}", ModelPojoWithMigrations.class);
+
+        Assert.assertEquals("0.6", pojo.getVersion());
+        Assert.assertEquals(Integer.valueOf(4), pojo.getSeats());
+    }
+
+    @Test
+    public void whenVersionIsAfterMigratedFields_MigrateTheBufferedFields() throws IOException {
+        ModelPojoWithMigrations pojo = mapper.readValue(
+                "{\"title\": \"rav4\", \"make\": \"toy\", \"version\": \"0.3\"}", ModelPojoWithMigrations.class);
+
+        Assert.assertEquals("rav4", pojo.getName());
+        Assert.assertEquals("TOY", pojo.getMake());
+        Assert.assertEquals(Integer.valueOf(4), pojo.getSeats());
+    }
+
+    @Test
+    public void whenMigrationsAreReadFromTree_DoNotChangeTheTree() throws IOException {
+        ObjectNode tree = (ObjectNode) mapper.readTree("{\"version\": \"0.3\", \"title\": \"rav4\"}");
+        ModelPojoWithMigrations pojo = mapper.treeToValue(tree, ModelPojoWithMigrations.class);
+
+        Assert.assertEquals("rav4", pojo.getName());
+        Assert.assertEquals(Integer.valueOf(4), pojo.getSeats());
+        Assert.assertTrue(tree.has("title"));
+    }
+
+    @Test
+    public void whenSerializingToAnOlderVersion_RenameTheMigratedFieldsBack() throws IOException {
+        ModelPojoWithMigrations pojo = new ModelPojoWithMigrations();
+        pojo.setVersion("0.3");
+        pojo.setName("rav4");
+        pojo.setSeats(7);
+        String json = mapper.writeValueAsString(pojo);
+
+        assertThatJson(json).node("title").isEqualTo("rav4");
+        assertThatJson(json).node("name").isAbsent();
+        assertThatJson(json).node("seats").isAbsent();
+    }
+
+    @Test
+    public void migrationsComposeInOrder() {
+        JsonVersionMigration first = JsonVersionMigration.builder().rename("a", "b").drop("x").insert("c", 1).build();
+        JsonVersionMigration second = JsonVersionMigration.builder().rename("b", "d").rename("c", "e").build();
+        ObjectNode node = JsonNodeFactory.instance.objectNode().put("a", "A").put("x", "X").put("y", "Y");
+
+        ObjectNode migrated = first.andThen(second).apply(node);
+
+        Assert.assertEquals(second.apply(first.apply(node)), migrated);
+        Assert.assertEquals("A", migrated.get("d").asText());
+        Assert.assertEquals(1, migrated.get("e").asInt());
+        Assert.assertFalse(migrated.has("x"));
+        Assert.assertEquals("a", first.andThen(second).originalName("d"));
+        Assert.assertNull(first.andThen(second).originalName("e"));
+    }
+
+    @Test (expected = JsonMappingException.class)
+    public void whenConverterIsNotStatic_FailToBuildTheDeserializer() throws IOException {
+        mapper.readValue("{\"name\": \"rav4\"}", ModelWithInstanceConverter.class);
+    }
+}
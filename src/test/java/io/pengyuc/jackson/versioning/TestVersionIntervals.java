@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Testing the {@link VersionIntervals} class
+ */
+public class TestVersionIntervals {
+    private static final VersionIntervals intervals = new VersionIntervals(Arrays.asList(
+            Version.fromString("0.7"), Version.fromString("0.2"), Version.fromString("0.7.0")));
+
+    @Test
+    public void boundariesAreSortedAndDistinct() {
+        Assert.assertEquals(3, intervals.size());
+        Assert.assertEquals("0", intervals.lowerBound(0).toString());
+        Assert.assertEquals("0.2", intervals.lowerBound(1).toString());
+        Assert.assertEquals("0.7", intervals.lowerBound(2).toString());
+    }
+
+    @Test
+    public void versionBeforeFirstBoundaryIsInFirstInterval() {
+        Assert.assertEquals(0, intervals.indexOf(Version.fromString("0.1")));
+    }
+
+    @Test
+    public void boundaryVersionStartsItsInterval() {
+        Assert.assertEquals(1, intervals.indexOf(Version.fromString("0.2")));
+        Assert.assertEquals(1, intervals.indexOf(Version.fromString("0.6.9")));
+        Assert.assertEquals(2, intervals.indexOf(Version.fromString("0.7.0.0")));
+        Assert.assertEquals(2, intervals.indexOf(Version.fromString("10")));
+    }
+
+    @Test
+    public void noBoundariesMeansOneInterval() {
+        VersionIntervals none = new VersionIntervals(Arrays.<Version>asList());
+        Assert.assertEquals(1, none.size());
+        Assert.assertEquals(0, none.indexOf(Version.fromString("1.0")));
+    }
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithVersionProperty;
+import io.pengyuc.jackson.versioning.models.VersionedCar;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class TestVersionSniffer {
+    private static final ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule());
+    private static final VersionSniffer sniffer = VersionSniffer.forModel(mapper, ModelPojoWithVersionProperty.class);
+
+    private static final String JSON_VERSION_LAST =
+            "{\"deprecatedAt09\": {\"version\": \"0.1\", \"nested\": [{\"version\": \"0.2\"}]}, " +
+            "\"alwaysThereAttribute\": \"alwaysThere\", \"version\": \"0.9\"}";
+
+    private static byte[] bytes(String json) throws IOException {
+        return json.getBytes("UTF-8");
+    }
+
+    @Test
+    public void sniffBytes_FindsTheTopLevelVersion() throws IOException {
+        Version version = sniffer.sniff(bytes(JSON_VERSION_LAST));
+
+        Assert.assertEquals("version", sniffer.getVersionProperty());
+        Assert.assertSame(Version.fromString("0.9"), version);
+        Assert.assertEquals(Version.fromString("1.2"), sniffer.sniff(bytes("{\"version\": 1.2}")));
+    }
+
+    @Test
+    public void sniffByteBuffers_LeavesThePositionAsItIs() throws IOException {
+        ByteBuffer heap = ByteBuffer.wrap(bytes("xx" + JSON_VERSION_LAST));
+        heap.position(2);
+        ByteBuffer direct = ByteBuffer.allocateDirect(heap.remaining());
+        direct.put(heap.duplicate()).flip();
+
+        Assert.assertEquals(Version.fromString("0.9"), sniffer.sniff(heap));
+        Assert.assertEquals(2, heap.position());
+        Assert.assertEquals(Version.fromString("0.9"), sniffer.sniff(direct));
+        Assert.assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void sniffMarkableStream_ResetsTheStream() throws IOException {
+        InputStream stream = new BufferedInputStream(new ByteArrayInputStream(bytes(
+                "{\"alwaysThereAttribute\": \"alwaysThere\", \"version\": \"0.9\"}")));
+
+        Assert.assertEquals(Version.fromString("0.9"), sniffer.sniff(stream));
+        // The whole json is still there to be read
+        ModelPojoWithVersionProperty pojo = mapper.readValue(stream, ModelPojoWithVersionProperty.class);
+        Assert.assertEquals("0.9", pojo.getVersion());
+        Assert.assertEquals("alwaysThere", pojo.getAlwaysThereAttribute());
+    }
+
+    @Test
+    public void versionNotInThePrefix_IsNotFound() throws IOException {
+        VersionSniffer shortSniffer = sniffer.withPrefixLength(20);
+
+        Assert.assertNull(shortSniffer.sniff(bytes(JSON_VERSION_LAST)));
+        Assert.assertNull(shortSniffer.sniff(new ByteArrayInputStream(bytes(JSON_VERSION_LAST))));
+        // The prefix ends inside the version number
+        Assert.assertNull(shortSniffer.sniff(bytes("{\"version\":      1.25}")));
+        Assert.assertEquals(Version.fromString("1.25"),
+                shortSniffer.sniff(bytes("{\"version\": 1.25, \"alwaysThereAttribute\": \"alwaysThere\"}")));
+    }
+
+    @Test
+    public void jsonWithoutVersion_IsNotFound() throws IOException {
+        Assert.assertNull(sniffer.sniff(bytes("{\"alwaysThereAttribute\": \"alwaysThere\"}")));
+        Assert.assertNull(sniffer.sniff(bytes("[{\"version\": \"0.9\"}]")));
+    }
+
+    @Test(expected = JsonVersioningException.class)
+    public void invalidVersion_IsRejected() throws IOException {
+        sniffer.sniff(bytes("{\"version\": \"0.-9\"}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void modelWithoutVersionProperty_CannotBeSniffed() {
+        VersionSniffer.forModel(mapper, VersionedCar.class);
+    }
+
+    @Test
+    public void whenVersionPropertyFirst_VersionIsWrittenFirst() throws IOException {
+        ObjectMapper sortedMapper = new ObjectMapper()
+                .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+                .registerModule(new JsonVersioningModule().setVersionPropertyFirst(true));
+        ModelPojoWithVersionProperty pojo = new ModelPojoWithVersionProperty();
+        pojo.setAlwaysThereAttribute("alwaysThere");
+        pojo.setDeprecatedAt09("something09");
+
+        String json = sortedMapper.writer().withAttribute(Version.JsonVersionConfigSerializing, "0.9")
+                .writeValueAsString(pojo);
+        Assert.assertEquals("{\"version\":\"0.9\",\"alwaysThereAttribute\":\"alwaysThere\"}", json);
+        Assert.assertEquals(Version.fromString("0.9"),
+                VersionSniffer.forModel(sortedMapper, ModelPojoWithVersionProperty.class).withPrefixLength(20)
+                        .sniff(bytes(json)));
+
+        // Each version writes different properties, so they are written property by property
+        List<String> jsons = JsonVersionFanOutWriter.forVersions(sortedMapper.writer(), "0.7", "1.0")
+                .writeValuesAsStrings(pojo);
+        Assert.assertEquals("{\"version\":\"0.7\",\"alwaysThereAttribute\":\"alwaysThere\"," +
+                "\"deprecatedAt08\":null,\"deprecatedAt09\":\"something09\"}", jsons.get(0));
+        Assert.assertEquals("{\"version\":\"1.0\",\"alwaysThereAttribute\":\"alwaysThere\"}", jsons.get(1));
+    }
+}
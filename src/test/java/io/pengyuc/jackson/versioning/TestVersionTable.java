@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.pengyuc.jackson.versioning.annotations.JsonSince;
+import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static net.javacrumbs.jsonunit.fluent.JsonFluentAssert.assertThatJson;
+
+/**
+ * The tables of these models are in src/test/resources, as the processor would write them
+ */
+public class TestVersionTable {
+    private static final ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule());
+
+    /**
+     * Versioned only through its table
+     */
+    @JsonVersioned("1.0")
+    public static class ModelWithTable {
+        public String version;
+        public String name;
+        public Integer seats;
+        private String legacy;
+
+        public String getLegacy() {
+            return legacy;
+        }
+
+        public void setLegacy(String legacy) {
+            this.legacy = legacy;
+        }
+
+        static JsonVersionMigration renameTitle() {
+            return JsonVersionMigration.builder().rename("title", "name").build();
+        }
+    }
+
+    /**
+     * Its table was written for an older model version
+     */
+    @JsonVersioned("1.0")
+    public static class ModelWithStaleTable {
+        public String name;
+        @JsonSince("0.9")
+        public Integer seats;
+    }
+
+    /**
+     * Its table was written before doors was added
+     */
+    @JsonVersioned("1.0")
+    public static class ModelWithStalePropertiesTable {
+        public String name;
+        @JsonSince("0.8")
+        public Integer seats;
+        @JsonSince("0.9")
+        public Integer doors;
+    }
+
+    @Test
+    public void whenModelHasTable_SerializeWithTheVersionsOfTheTable() throws IOException {
+        ModelWithTable pojo = new ModelWithTable();
+        pojo.version = "0.4";
+        pojo.name = "rav4";
+        pojo.seats = 5;
+        pojo.legacy = "old";
+
+        assertThatJson(mapper.writeValueAsString(pojo))
+                .isEqualTo("{\"version\": \"0.4\", \"title\": \"rav4\", \"legacy\": \"old\"}");
+
+        pojo.version = "0.8";
+        assertThatJson(mapper.writeValueAsString(pojo))
+                .isEqualTo("{\"version\": \"0.8\", \"name\": \"rav4\", \"seats\": 5}");
+    }
+
+    @Test
+    public void whenModelHasTable_DeserializeWithTheConvertersOfTheTable() throws IOException {
+        ModelWithTable pojo = mapper.readValue("{\"version\": \"0.4\", \"title\": \"rav4\"}", ModelWithTable.class);
+
+        Assert.assertEquals("0.4", pojo.version);
+        Assert.assertEquals("rav4", pojo.name);
+    }
+
+    @Test
+    public void whenTableIsForAnotherModelVersion_UseTheAnnotations() throws IOException {
+        ModelWithStaleTable pojo = new ModelWithStaleTable();
+        pojo.name = "rav4";
+        pojo.seats = 5;
+
+        assertThatJson(mapper.writer().withAttribute(Version.JsonVersionConfigSerializing, "0.8")
+                .writeValueAsString(pojo))
+                .isEqualTo("{\"name\": \"rav4\"}");
+    }
+
+    @Test
+    public void whenTableIsForOtherProperties_UseTheAnnotations() throws IOException {
+        ModelWithStalePropertiesTable pojo = new ModelWithStalePropertiesTable();
+        pojo.name = "rav4";
+        pojo.seats = 5;
+        pojo.doors = 4;
+
+        assertThatJson(mapper.writer().withAttribute(Version.JsonVersionConfigSerializing, "0.8")
+                .writeValueAsString(pojo))
+                .isEqualTo("{\"name\": \"rav4\", \"seats\": 5}");
+    }
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+
+package io.pengyuc.jackson.versioning;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.pengyuc.jackson.versioning.models.ModelPojoWithVersionProperty;
+import io.pengyuc.jackson.versioning.models.VersionedCar;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TestVersioningRejections {
+    private static final ObjectMapper mapper = new ObjectMapper().registerModule(new JsonVersioningModule());
+    private static final ObjectMapper noStackTraceMapper =
+            new ObjectMapper().registerModule(new JsonVersioningModule().setRejectionStackTraces(false));
+
+    private static final String JSON_VER_09_WITH_OLD_ATTR =
+            "{\"version\": \"0.9\", \"alwaysThereAttribute\": \"alwaysThere\", \"deprecatedAt08\": \"something08\"}";
+
+    private static JsonVersioningException readRejected(ObjectMapper mapper, String json) throws IOException {
+        try {
+            mapper.readValue(json, ModelPojoWithVersionProperty.class);
+        } catch (JsonVersioningException e) {
+            return e;
+        }
+        Assert.fail("The json was not rejected");
+        return null;
+    }
+
+    @Test
+    public void propertyNotInVersion_RejectedWithTheProperty() throws IOException {
+        JsonVersioningException e = readRejected(mapper, JSON_VER_09_WITH_OLD_ATTR);
+
+        Assert.assertEquals(JsonVersioningException.Reason.PROPERTY_NOT_IN_VERSION, e.getReason());
+        Assert.assertEquals(ModelPojoWithVersionProperty.class, e.getModel());
+        Assert.assertEquals("deprecatedAt08", e.getProperty());
+        Assert.assertEquals(Version.fromString("0.9"), e.getJsonVersion());
+        Assert.assertEquals("Property \"deprecatedAt08\" is not in version 0.9", e.getOriginalMessage());
+        Assert.assertTrue(e.getMessage().startsWith(e.getOriginalMessage() + "\n at [Source: "));
+        Assert.assertTrue(e.getStackTrace().length > 0);
+    }
+
+    @Test
+    public void invalidVersion_RejectedWithTheReasonItIsNotValid() throws IOException {
+        JsonVersioningException e = readRejected(mapper, "{\"version\": \"1.-2\"}");
+
+        Assert.assertEquals(JsonVersioningException.Reason.INVALID_VERSION, e.getReason());
+        Assert.assertEquals("1.-2", e.getVersionString());
+        Assert.assertNull(e.getJsonVersion());
+        Assert.assertEquals("Failed to parse version string: Input string value cannot be negative: -2",
+                e.getOriginalMessage());
+    }
+
+    @Test
+    public void versionAfterModel_RejectedWithTheModelVersion() throws IOException {
+        JsonVersioningException e = readRejected(mapper, "{\"version\": \"1.1\"}");
+
+        Assert.assertEquals(JsonVersioningException.Reason.VERSION_AFTER_MODEL, e.getReason());
+        Assert.assertEquals(Version.fromString("1.0"), e.getModelVersion());
+        Assert.assertEquals("JSON version (1.1) is greater than the latest model version (1.0)",
+                e.getOriginalMessage());
+    }
+
+    @Test
+    public void whenModuleHasNoRejectionStackTraces_StackTraceIsNotCaptured() throws IOException {
+        JsonVersioningException e = readRejected(noStackTraceMapper, JSON_VER_09_WITH_OLD_ATTR);
+
+        Assert.assertEquals(0, e.getStackTrace().length);
+        Assert.assertEquals("Property \"deprecatedAt08\" is not in version 0.9", e.getOriginalMessage());
+    }
+
+    @Test
+    public void whenReaderAsksForRejectionStackTraces_StackTraceIsCaptured() throws IOException {
+        try {
+            noStackTraceMapper.readerFor(ModelPojoWithVersionProperty.class)
+                    .withAttribute(Version.JsonVersionConfigRejectionStackTraces, "true")
+                    .readValue(JSON_VER_09_WITH_OLD_ATTR);
+            Assert.fail("The json was not rejected");
+        } catch (JsonVersioningException e) {
+            Assert.assertTrue(e.getStackTrace().length > 0);
+        }
+    }
+
+    @Test
+    public void serializeToAHigherVersion_RejectedWithTheVersions() throws JsonProcessingException {
+        VersionedCar car = new VersionedCar(5, "rav4", "toyota", true);
+        try {
+            noStackTraceMapper.writer()
+                    .withAttribute(Version.JsonVersionConfigSerializing, "1.1")
+                    .writeValueAsString(car);
+            Assert.fail("The bean was not rejected");
+        } catch (JsonVersioningGenerationException e) {
+            Assert.assertEquals(VersionedCar.class, e.getModel());
+            Assert.assertEquals(Version.fromString("1.1"), e.getJsonVersion());
+            Assert.assertEquals("JSON version (1.1) is greater than the latest model version (1.0)", e.getMessage());
+            Assert.assertEquals(0, e.getStackTrace().length);
+        }
+    }
+
+    @Test
+    public void resultReader_ReturnsValuesAndRejections() throws IOException {
+        JsonVersionResultReader<ModelPojoWithVersionProperty> reader =
+                JsonVersionResultReader.forType(mapper.reader(), ModelPojoWithVersionProperty.class);
+
+        JsonVersionResult<ModelPojoWithVersionProperty> result =
+                reader.readValue("{\"version\": \"0.9\", \"alwaysThereAttribute\": \"alwaysThere\"}");
+        Assert.assertFalse(result.isRejected());
+        Assert.assertEquals("alwaysThere", result.getValue().getAlwaysThereAttribute());
+
+        result = reader.readValue(JSON_VER_09_WITH_OLD_ATTR.getBytes("UTF-8"));
+        Assert.assertTrue(result.isRejected());
+        Assert.assertEquals("deprecatedAt08", result.getRejection().getProperty());
+        // Rejections read as results are not worth a stack trace
+        Assert.assertEquals(0, result.getRejection().getStackTrace().length);
+
+        result = reader.readValue(mapper.readTree("{\"version\": \"x\"}"));
+        Assert.assertEquals(JsonVersioningException.Reason.INVALID_VERSION, result.getRejection().getReason());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void resultReader_RejectedResultHasNoValue() throws IOException {
+        JsonVersionResultReader.forType(mapper.reader(), ModelPojoWithVersionProperty.class)
+                .readValue("{\"version\": \"2.0\"}")
+                .getValue();
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void resultReader_MalformedJsonIsStillThrown() throws IOException {
+        JsonVersionResultReader.forType(mapper.reader(), ModelPojoWithVersionProperty.class)
+                .readValue("{\"version\": ");
+    }
+}
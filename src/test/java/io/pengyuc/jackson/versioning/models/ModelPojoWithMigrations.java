@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Pengyu Chen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ ******************************************************************************/
+package io.pengyuc.jackson.versioning.models;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import io.pengyuc.jackson.versioning.JsonVersionMigration;
+import io.pengyuc.jackson.versioning.annotations.JsonSince;
+import io.pengyuc.jackson.versioning.annotations.JsonUntil;
+import io.pengyuc.jackson.versioning.annotations.JsonVersionConverter;
+import io.pengyuc.jackson.versioning.annotations.JsonVersionProperty;
+import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
+
+/**
+ * "name" is called "title" and "legacy" is dropped in 0.5; "seats" is added and "make" is upper case in 0.8
+ */
+@JsonVersioned("1.0")
+public class ModelPojoWithMigrations {
+    @JsonVersionProperty
+    private String version;
+
+    private String name;
+
+    private String make;
+
+    @JsonSince("0.8")
+    private Integer seats;
+
+    @JsonVersionConverter
+    @JsonUntil("0.5")
+    static JsonVersionMigration renameTitle() {
+        return JsonVersionMigration.builder()
+                .rename("title", "name")
+                .drop("legacy")
+                .build();
+    }
+
+    @JsonVersionConverter
+    @JsonSince("0.5")
+    @JsonUntil("0.8")
+    static JsonVersionMigration addSeats() {
+        return JsonVersionMigration.builder()
+                .insert("seats", 4)
+                .transform("make", new JsonVersionMigration.ValueTransform() {
+                    @Override
+                    public JsonNode transform(JsonNode value) {
+                        return JsonNodeFactory.instance.textNode(value.asText().toUpperCase());
+                    }
+                })
+                .build();
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getMake() {
+        return make;
+    }
+
+    public void setMake(String make) {
+        this.make = make;
+    }
+
+    public Integer getSeats() {
+        return seats;
+    }
+
+    public void setSeats(Integer seats) {
+        this.seats = seats;
+    }
+}
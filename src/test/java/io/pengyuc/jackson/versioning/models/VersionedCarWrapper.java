@@ -33,6 +33,9 @@ import io.pengyuc.jackson.versioning.annotations.JsonVersioned;
 public class VersionedCarWrapper {
     private VersionedCar car;
 
+    public VersionedCarWrapper() {
+    }
+
     public VersionedCarWrapper(VersionedCar car) {
         this.car = car;
     }